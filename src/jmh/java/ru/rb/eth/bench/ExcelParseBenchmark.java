@@ -0,0 +1,52 @@
+package ru.rb.eth.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.rb.eth.xslx.Excel;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a whole sheet into the in-memory {@link Excel}: loading the book, validating every row and
+ * writing the parsing result. The book needs several GB of heap at 1M rows, so that size is only
+ * measured by {@link StreamingParseBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ExcelParseBenchmark {
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private Path path;
+
+    @Setup
+    public void setup() throws Exception {
+        path = Sheets.xlsx(rows);
+    }
+
+    @Benchmark
+    public int inMemory() throws Exception {
+        Excel excel = new Excel(path.toString());
+        try {
+            excel.parseSheet();
+            return excel.getTable().getRowCount();
+        } finally {
+            excel.close().join();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.rb.eth.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.rb.eth.journal.ProgressJournal;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionStatus;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing the three records a row leaves in the progress journal (parsed, pending, confirmed),
+ * with the journal committing to disk on its own flusher thread as in a real run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    private static final int ROWS = 1024;
+    private static final long COMMIT_MILLIS = 100;
+
+    private final Transaction[] transactions = new Transaction[ROWS];
+    private Path path;
+    private ProgressJournal journal;
+    private int row;
+
+    @Setup
+    public void setup() throws Exception {
+        List<String> addresses = Sheets.addresses(ROWS);
+        List<String> amounts = Sheets.amounts(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            transactions[i] = new Transaction(i + 1, addresses.get(i), amounts.get(i));
+        }
+        path = Files.createTempFile("eth-sender-bench", ".journal");
+        Files.delete(path);
+        journal = ProgressJournal.create(path, "old", COMMIT_MILLIS);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        journal.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public void appendRow() {
+        Transaction transaction = transactions[row];
+        row = (row + 1) & (ROWS - 1);
+
+        transaction.updateStatus(TransactionStatus.PARSED);
+        journal.append(transaction);
+        transaction.updateStatus(TransactionStatus.PENDING);
+        journal.append(transaction);
+        transaction.setHash("0x5c504ed432cb51138bcf09aa5e8a410dd4a1e204ef84bfed1be16dfba1b22060");
+        transaction.setGasUsed(BigInteger.valueOf(51_000));
+        transaction.updateStatus(TransactionStatus.CONFIRMED);
+        journal.append(transaction);
+    }
+}
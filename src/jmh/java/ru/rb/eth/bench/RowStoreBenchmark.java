@@ -0,0 +1,77 @@
+package ru.rb.eth.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionSource;
+import ru.rb.eth.model.TransactionTable;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading parsed rows into one {@link Transaction} per row and into a {@link TransactionTable}, and
+ * handing the table rows out again. Run with the allocation profiler, {@code gc.alloc.rate.norm} of the
+ * loading benchmarks is about the memory the rows keep; the table reports its own size with
+ * {@link TransactionTable#getMemoryBytes()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RowStoreBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int rows;
+
+    private List<String> addresses;
+    private List<String> amounts;
+    private TransactionTable table;
+
+    @Setup
+    public void setup() {
+        addresses = Sheets.addresses(rows);
+        amounts = Sheets.amounts(rows);
+        table = table();
+    }
+
+    @Benchmark
+    public ArrayDeque<Transaction> transactions() {
+        ArrayDeque<Transaction> transactions = new ArrayDeque<>();
+        for (int i = 0; i < rows; i++) {
+            transactions.add(new Transaction(i + 1, new String(addresses.get(i)), new String(amounts.get(i))));
+        }
+        return transactions;
+    }
+
+    @Benchmark
+    public TransactionTable table() {
+        TransactionTable table = new TransactionTable();
+        for (int i = 0; i < rows; i++) {
+            table.add(i + 1, addresses.get(i), amounts.get(i));
+        }
+        return table;
+    }
+
+    @Benchmark
+    public int poll() {
+        TransactionSource source = table.source();
+        int count = 0;
+        while (source.poll() != null) {
+            count++;
+        }
+        return count;
+    }
+}
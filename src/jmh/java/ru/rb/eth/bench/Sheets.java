@@ -0,0 +1,85 @@
+package ru.rb.eth.bench;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.web3j.crypto.Keys;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generated input for the benchmarks: the same seeded rows every run, with checksummed addresses and
+ * amounts of up to three decimals. Sheets are written once to {@code java.io.tmpdir/eth-sender-bench}
+ * and reused by later runs.
+ */
+final class Sheets {
+
+    private static final long SEED = 42;
+
+    private Sheets() {
+    }
+
+    static List<String> addresses(int rows) {
+        Random random = new Random(SEED);
+        List<String> addresses = new ArrayList<>(rows);
+        StringBuilder address = new StringBuilder(40);
+        for (int i = 0; i < rows; i++) {
+            address.setLength(0);
+            for (int j = 0; j < 40; j++) {
+                address.append(Character.forDigit(random.nextInt(16), 16));
+            }
+            addresses.add(Keys.toChecksumAddress(address.toString()));
+        }
+        return addresses;
+    }
+
+    static List<String> amounts(int rows) {
+        Random random = new Random(SEED + 1);
+        List<String> amounts = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            amounts.add((random.nextInt(10000) + 1) + "." + random.nextInt(1000));
+        }
+        return amounts;
+    }
+
+    /**
+     * A sheet with a header row and {@code rows} rows of address and amount.
+     */
+    static Path xlsx(int rows) throws IOException {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "eth-sender-bench");
+        Files.createDirectories(dir);
+        Path path = dir.resolve("rows-" + rows + ".xlsx");
+        if(Files.exists(path)) {
+            return path;
+        }
+
+        List<String> addresses = addresses(rows);
+        List<String> amounts = amounts(rows);
+        Path tmp = dir.resolve("rows-" + rows + ".xlsx.tmp");
+        SXSSFWorkbook workbook = new SXSSFWorkbook(1000);
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            Sheet sheet = workbook.createSheet();
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Address");
+            header.createCell(1).setCellValue("Amount");
+            for (int i = 0; i < rows; i++) {
+                Row row = sheet.createRow(i + 1);
+                row.createCell(0).setCellValue(addresses.get(i));
+                row.createCell(1).setCellValue(Double.parseDouble(amounts.get(i)));
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+        Files.move(tmp, path);
+        return path;
+    }
+}
@@ -0,0 +1,99 @@
+package ru.rb.eth.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.utils.Numeric;
+import org.web3j.tx.Contract;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.send.GasPriceStrategy;
+import ru.rb.eth.send.TokenTransferBuilder;
+import ru.rb.eth.send.TransactionSigner;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building, ECDSA signing and hashing one token transfer, as the pre-signer does for every row, against
+ * the same transfer signed through {@code TransactionEncoder.signMessage}. Setup first checks that both give
+ * the same bytes for random transfers signed with random keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SigningBenchmark {
+
+    private static final int ROWS = 1024;
+    private static final int CHECKED_KEYS = 64;
+    private static final String PRIVATE_KEY = "4c0883a69102937d6231471b5dbb6204fe5129617082792ae468d01a3f362318";
+    private static final String CONTRACT = "0x2b591e99afe9f32eaa6214f7b7629768c40eeb39";
+
+    private final Transaction[] transactions = new Transaction[ROWS];
+    private Credentials credentials;
+    private TokenTransferBuilder builder;
+    private TransactionSigner signer;
+    private long nonce;
+
+    @Setup
+    public void setup() {
+        List<String> addresses = Sheets.addresses(ROWS);
+        List<String> amounts = Sheets.amounts(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            transactions[i] = new Transaction(i + 1, addresses.get(i), amounts.get(i));
+        }
+        GasPriceStrategy gasStrategy = new GasPriceStrategy(calls -> {}, BigInteger.valueOf(20_000_000_000L), -1, null, 0);
+        credentials = Credentials.create(PRIVATE_KEY);
+        builder = new TokenTransferBuilder(CONTRACT, Contract.GAS_LIMIT, 18);
+        signer = new TransactionSigner(credentials, builder, gasStrategy);
+        checkSameBytes(gasStrategy);
+    }
+
+    private void checkSameBytes(GasPriceStrategy gasStrategy) {
+        Random random = new Random(7);
+        for (int i = 0; i < CHECKED_KEYS; i++) {
+            Credentials key = Credentials.create(Numeric.toHexStringWithPrefixZeroPadded(new BigInteger(255, random).add(BigInteger.ONE), 64));
+            TransactionSigner keySigner = new TransactionSigner(key, builder, gasStrategy);
+            for (int j = 0; j < ROWS / CHECKED_KEYS; j++) {
+                Transaction transaction = transactions[random.nextInt(ROWS)];
+                BigInteger nonce = BigInteger.valueOf(random.nextInt(1 << 20));
+                BigInteger gasPrice = BigInteger.valueOf(random.nextInt(Integer.MAX_VALUE) + 1L);
+                keySigner.sign(transaction, nonce, gasPrice);
+                String expected = Numeric.toHexString(TransactionEncoder.signMessage(builder.build(transaction, nonce, gasPrice), key));
+                if(!expected.equals(transaction.getSignedTx())) {
+                    throw new IllegalStateException("Signed transfer differs from web3j's for key " + key.getAddress() + ": "
+                            + transaction.getSignedTx() + " != " + expected);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public String sign() {
+        Transaction transaction = transactions[(int) (nonce & (ROWS - 1))];
+        signer.sign(transaction, BigInteger.valueOf(nonce++));
+        return transaction.getSignedTx();
+    }
+
+    @Benchmark
+    public String web3j() {
+        Transaction transaction = transactions[(int) (nonce & (ROWS - 1))];
+        String signedTx = Numeric.toHexString(TransactionEncoder.signMessage(
+                builder.build(transaction, BigInteger.valueOf(nonce++), BigInteger.valueOf(20_000_000_000L)), credentials));
+        return Hash.sha3(signedTx);
+    }
+}
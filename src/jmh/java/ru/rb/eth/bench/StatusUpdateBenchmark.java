@@ -0,0 +1,82 @@
+package ru.rb.eth.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionStatus;
+import ru.rb.eth.xslx.Excel;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every row going PENDING and then CONFIRMED in the in-memory book as seen by the callback threads, and
+ * the same followed by writing the progress file, as at the end of a run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class StatusUpdateBenchmark {
+
+    private static final String HASH = "0x" + String.join("", Collections.nCopies(8, "5c504ed4"));
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private Excel excel;
+    private List<Transaction> transactions;
+
+    @Setup(Level.Invocation)
+    public void setup() throws Exception {
+        excel = new Excel(Sheets.xlsx(rows).toString());
+        excel.parseSheet();
+        excel.flush().join();
+        transactions = new ArrayList<>(excel.getTable().toDeque(TransactionStatus.PARSED));
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        excel.close().join();
+    }
+
+    @Benchmark
+    public void update() {
+        updateStatuses();
+    }
+
+    @Benchmark
+    public void updateAndWrite() {
+        updateStatuses();
+        excel.write(false).join();
+    }
+
+    private void updateStatuses() {
+        for (Transaction transaction : transactions) {
+            transaction.updateStatus(TransactionStatus.PENDING);
+            excel.updateStatus(transaction);
+        }
+        for (Transaction transaction : transactions) {
+            transaction.setHash(HASH);
+            transaction.setGasUsed(BigInteger.valueOf(51_000));
+            transaction.updateStatus(TransactionStatus.CONFIRMED);
+            excel.updateStatus(transaction);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.rb.eth.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.xslx.StreamingExcel;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a whole sheet with {@link StreamingExcel}: parsing and validating row by row while this
+ * thread takes the rows off the queue, as the send lanes do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class StreamingParseBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    private Path path;
+
+    @Setup
+    public void setup() throws Exception {
+        path = Sheets.xlsx(rows);
+    }
+
+    @Benchmark
+    public int streaming() throws Exception {
+        StreamingExcel excel = new StreamingExcel(path.toString());
+        Thread reader = new Thread(excel::read, "bench-reader");
+        reader.start();
+        int taken = 0;
+        while (!excel.isExhausted()) {
+            Transaction transaction = excel.poll();
+            if(transaction == null) {
+                Thread.yield();
+            } else {
+                taken++;
+            }
+        }
+        reader.join();
+        excel.closeBook();
+        return taken;
+    }
+}
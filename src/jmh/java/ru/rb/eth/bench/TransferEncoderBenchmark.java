@@ -0,0 +1,71 @@
+package ru.rb.eth.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.rb.eth.contract.TestToken;
+import ru.rb.eth.contract.TransferEncoder;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calldata for one row: the generic web3j path used by {@code TestToken.transfer} against {@link TransferEncoder}.
+ * Run with {@code gradle jmh -Pbench=TransferEncoder}; {@code gc.alloc.rate.norm} is the allocation per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferEncoderBenchmark {
+
+    private static final int ROWS = 1024;
+    private static final int DECIMALS = 18;
+
+    private final String[] addresses = new String[ROWS];
+    private final String[] amounts = new String[ROWS];
+    private final BigDecimal dec = BigDecimal.TEN.pow(DECIMALS);
+    private final TransferEncoder encoder = new TransferEncoder(DECIMALS);
+
+    private int row;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < ROWS; i++) {
+            StringBuilder address = new StringBuilder("0x");
+            for (int j = 0; j < 40; j++) {
+                address.append(Character.forDigit(random.nextInt(16), 16));
+            }
+            addresses[i] = address.toString();
+            amounts[i] = random.nextInt(10000) + "." + random.nextInt(1000);
+        }
+    }
+
+    @Benchmark
+    public String generic() {
+        int i = next();
+        return TestToken.encodeTransfer(addresses[i], new BigDecimal(amounts[i]).multiply(dec).toBigIntegerExact());
+    }
+
+    @Benchmark
+    public String precomputed() {
+        int i = next();
+        return encoder.encode(addresses[i], amounts[i]);
+    }
+
+    private int next() {
+        row = (row + 1) & (ROWS - 1);
+        return row;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.rb.eth.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.rb.eth.util.RowValidator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Address and amount validation of a whole sheet, on the fork/join pool as {@code Excel.parseSheet}
+ * does it and row by row as {@code StreamingExcel} does it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ValidationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    private List<String> addresses;
+    private List<String> amounts;
+
+    @Setup
+    public void setup() {
+        addresses = Sheets.addresses(rows);
+        amounts = Sheets.amounts(rows);
+    }
+
+    @Benchmark
+    public int[] parallel() {
+        return RowValidator.validate(addresses, amounts);
+    }
+
+    @Benchmark
+    public int sequential() {
+        int parsed = 0;
+        for (int i = 0; i < rows; i++) {
+            parsed += RowValidator.validate(addresses.get(i), amounts.get(i));
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,296 @@
+package ru.rb.eth.mock;
+
+import com.beust.jcommander.JCommander;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.tx.Contract;
+import org.web3j.utils.Numeric;
+import ru.rb.eth.Main;
+import ru.rb.eth.contract.TransferEncoder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs the whole sender against a {@link MockNode} on a generated table and reports throughput and
+ * latencies read from the sender's metrics MBean.
+ *
+ * <p>{@code gradle loadtest -Pargs="--rows 20000 --lanes 4 --latency 50 --sender '-b 20 --max-rate 500'"}
+ *
+ * <p>With {@code --paid-rows} the first rows are paid from the first sender account before the sender starts,
+ * as if an earlier run had died without its journal, and the sender runs with {@code --reconcile-from 1}.
+ */
+public class LoadTest {
+
+    private static final String CONTRACT = "0x2b591e99afe9f32eaa6214f7b7629768c40eeb39";
+    private static final long POLL_MILLIS = 500;
+    private static final String ETH_PRICE = "3000";
+    private static final String[][] DEFAULT_OPTIONS = {
+            {"-o", "10"}, {"--max-rate", "1000"}, {"-w", "500"}, {"-t", "10"}
+    };
+
+    public static void main(String[] argv) throws Exception {
+        LoadTestArgs args = new LoadTestArgs();
+        JCommander.newBuilder()
+                .addObject(args)
+                .build()
+                .parse(argv);
+
+        int status = new LoadTest().run(args);
+        System.exit(status);
+    }
+
+    private Logger log;
+
+    private int run(LoadTestArgs args) throws Exception {
+        log = LoggerFactory.getLogger(LoadTest.class);
+
+        MockNode node = new MockNode(0);
+        node.setBlockTimeMillis(args.getBlockTime());
+        node.setBlockGasLimit(args.getBlockGasLimit());
+        List<Long> latencies = args.getNodeLatencies();
+        List<Double> errorRates = args.getNodeErrorRates();
+        node.setLatencyMillis(latencies.get(0));
+        node.setErrorRate(errorRates.get(0));
+        node.setDropRate(args.getDropRate());
+        node.setRevertRate(args.getRevertRate());
+        node.setDecimals(args.getDecimals());
+        if(args.getTokenBalance() > 0) {
+            node.setTokenBalance(BigInteger.valueOf(args.getTokenBalance()).multiply(BigInteger.TEN.pow(args.getDecimals())));
+        }
+        node.start();
+        MockWebSocketServer webSocketServer = null;
+        List<MockNodeFront> fronts = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        urls.add(node.getUrl());
+        for (int i = 1; i < args.getNodes(); i++) {
+            MockNodeFront front = new MockNodeFront(node, latencies.get(i), errorRates.get(i));
+            front.start();
+            fronts.add(front);
+            urls.add(front.getUrl());
+        }
+        String url = String.join(",", urls);
+        if(args.getTransport().equals("ws")) {
+            if(args.getNodes() > 1) {
+                log.error("--nodes works over HTTP only");
+                stop(node, fronts, null);
+                return 1;
+            }
+            webSocketServer = new MockWebSocketServer(node, 0);
+            webSocketServer.start();
+            url = webSocketServer.getUrl();
+        }
+
+        Path dir = Files.createTempDirectory("eth-sender-loadtest");
+        Path table = dir.resolve("loadtest." + args.getFormat());
+        if(args.getFormat().equals("xlsx")) {
+            writeTable(table, args.getRows());
+        } else {
+            writeText(table, args.getRows(), args.getFormat().equals("tsv") ? '\t' : ',');
+        }
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < args.getLanes(); i++) {
+            keys.add(Numeric.toHexStringNoPrefixZeroPadded(BigInteger.valueOf(1000 + i), 64));
+            node.addHolder(Credentials.create(keys.get(i)).getAddress());
+        }
+        List<String> senderArgv = new ArrayList<>(Arrays.asList(
+                "-x", table.toString(), "-a", CONTRACT, "-u", url, "-p", String.join(",", keys)));
+        List<String> extra = tokenize(args.getSenderArgs());
+        for (String[] option : DEFAULT_OPTIONS) {
+            if(!extra.contains(option[0])) {
+                senderArgv.addAll(Arrays.asList(option));
+            }
+        }
+        if(!extra.contains("--eth-price")) {
+            Path price = dir.resolve("eth-price.txt");
+            Files.write(price, ETH_PRICE.getBytes(StandardCharsets.US_ASCII));
+            senderArgv.addAll(Arrays.asList("--eth-price", price.toString()));
+        }
+        senderArgv.addAll(extra);
+        if(args.getPaidRows() > 0) {
+            pay(node, keys.get(0), args.getPaidRows());
+            senderArgv.addAll(Arrays.asList("--reconcile-from", "1"));
+        }
+        log.info("Sender options: " + String.join(" ", senderArgv));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName metrics = new ObjectName("ru.rb.eth:type=Metrics");
+
+        long start = System.nanoTime();
+        Main.main(senderArgv.toArray(new String[0]));
+
+        long deadline = start + args.getTimeout() * 1_000_000_000L;
+        long settled = 0;
+        while (System.nanoTime() - deadline < 0) {
+            Thread.sleep(POLL_MILLIS);
+            if(!server.isRegistered(metrics)) {
+                continue;
+            }
+            settled = (Long) server.getAttribute(metrics, "Confirmed") + (Long) server.getAttribute(metrics, "Failed");
+            if(settled >= args.getRows() - args.getPaidRows()) {
+                break;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        if(!server.isRegistered(metrics)) {
+            log.error("The sender did not start, see the log above");
+            stop(node, fronts, webSocketServer);
+            return 1;
+        }
+        long sent = (Long) server.getAttribute(metrics, "Sent");
+        long confirmed = (Long) server.getAttribute(metrics, "Confirmed");
+        long failed = (Long) server.getAttribute(metrics, "Failed");
+
+        log.info("==== Load test ====");
+        log.info(String.format("Rows: %d | Paid before: %d | Sent: %d | Confirmed: %d | Failed: %d | Time: %.1f s",
+                args.getRows(), args.getPaidRows(), sent, confirmed, failed, seconds));
+        log.info(String.format("Throughput: %.1f tx/s sent, %.1f rows/s confirmed", sent / seconds, confirmed / seconds));
+        log.info(String.format("Broadcast latency: p50 %.1f ms, p99 %.1f ms",
+                (Double) server.getAttribute(metrics, "BroadcastLatencyP50Millis"), (Double) server.getAttribute(metrics, "BroadcastLatencyP99Millis")));
+        log.info(String.format("Confirmation latency: p50 %.1f ms, p99 %.1f ms",
+                (Double) server.getAttribute(metrics, "ConfirmLatencyP50Millis"), (Double) server.getAttribute(metrics, "ConfirmLatencyP99Millis")));
+        log.info(String.format("Cost: gas %d, %s ETH, %.2f USD", (Long) server.getAttribute(metrics, "GasUsed"),
+                server.getAttribute(metrics, "CostEth"), (Double) server.getAttribute(metrics, "CostUsd")));
+        log.info("RPC errors: " + server.getAttribute(metrics, "RpcErrors"));
+        log.info("Node: " + node.getUrl() + ": " + node.describe());
+        for (MockNodeFront front : fronts) {
+            log.info("Node: " + front.describe());
+        }
+        if(!fronts.isEmpty()) {
+            log.info("Pool: " + server.getAttribute(metrics, "Nodes"));
+        }
+        if(webSocketServer != null) {
+            log.info("WebSocket: " + webSocketServer.describe());
+        }
+        log.info("Files: " + dir);
+
+        stop(node, fronts, webSocketServer);
+        return settled >= args.getRows() - args.getPaidRows() ? 0 : 2;
+    }
+
+    /**
+     * Pays the first rows of the generated table and waits until they are mined.
+     */
+    private void pay(MockNode node, String key, int rows) throws Exception {
+        Credentials credentials = Credentials.create(key);
+        String from = credentials.getAddress().toLowerCase();
+        TransferEncoder encoder = new TransferEncoder(18);
+        Random random = new Random(42);
+        long nonce = node.getTransactionCount(from, true);
+        for (int i = 0; i < rows; i++) {
+            RawTransaction transaction = RawTransaction.createTransaction(BigInteger.valueOf(nonce + i), BigInteger.ONE,
+                    Contract.GAS_LIMIT, CONTRACT, BigInteger.ZERO, encoder.encode(address(random), amount(random)));
+            node.submit(Numeric.toHexString(TransactionEncoder.signMessage(transaction, credentials)));
+        }
+        while (node.getTransactionCount(from, false) < nonce + rows) {
+            Thread.sleep(POLL_MILLIS);
+        }
+        log.info("Paid " + rows + " rows before the start: " + node.describe());
+    }
+
+    private static void stop(MockNode node, List<MockNodeFront> fronts, MockWebSocketServer webSocketServer) {
+        if(webSocketServer != null) {
+            webSocketServer.stop();
+        }
+        for (MockNodeFront front : fronts) {
+            front.stop();
+        }
+        node.stop();
+    }
+
+    private static void writeTable(Path path, int rows) throws Exception {
+        Random random = new Random(42);
+        SXSSFWorkbook workbook = new SXSSFWorkbook(1000);
+        try (OutputStream out = Files.newOutputStream(path)) {
+            Sheet sheet = workbook.createSheet();
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Address");
+            header.createCell(1).setCellValue("Amount");
+            for (int i = 1; i <= rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(address(random));
+                row.createCell(1).setCellValue(amount(random));
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private static void writeText(Path path, int rows, char delimiter) throws Exception {
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("Address" + delimiter + "Amount");
+            writer.newLine();
+            for (int i = 1; i <= rows; i++) {
+                writer.write(address(random));
+                writer.write(delimiter);
+                writer.write(amount(random));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String address(Random random) {
+        StringBuilder address = new StringBuilder(42).append("0x");
+        for (int j = 0; j < 40; j++) {
+            address.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return address.toString();
+    }
+
+    private static String amount(Random random) {
+        return (random.nextInt(1000) + 1) + "." + random.nextInt(100);
+    }
+
+    /**
+     * Splits on spaces, keeping text in single or double quotes together.
+     */
+    private static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        char quote = 0;
+        for (char c : line.toCharArray()) {
+            if(quote != 0) {
+                if(c == quote) {
+                    quote = 0;
+                } else {
+                    token.append(c);
+                }
+            } else if(c == '\'' || c == '"') {
+                quote = c;
+            } else if(c == ' ') {
+                if(token.length() > 0) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                }
+            } else {
+                token.append(c);
+            }
+        }
+        if(token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+}
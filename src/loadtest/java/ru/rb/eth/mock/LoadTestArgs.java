@@ -0,0 +1,159 @@
+package ru.rb.eth.mock;
+
+import com.beust.jcommander.Parameter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoadTestArgs {
+
+    @Parameter(names = { "--rows" }, description = "Rows in the generated table")
+    private int rows = 10000;
+
+    @Parameter(names = { "--format" }, description = "Format of the generated table: xlsx, csv or tsv")
+    private String format = "xlsx";
+
+    @Parameter(names = { "--transport" }, description = "How the sender reaches the mock node: http or ws")
+    private String transport = "http";
+
+    @Parameter(names = { "--lanes" }, description = "Sender accounts")
+    private int lanes = 1;
+
+    @Parameter(names = { "--block-time" }, description = "Time between mock blocks (in milliseconds)")
+    private long blockTime = 1000;
+
+    @Parameter(names = { "--block-gas" }, description = "Gas limit of a mock block")
+    private long blockGasLimit = 8_000_000;
+
+    @Parameter(names = { "--nodes" }, description = "HTTP nodes of the mock chain the sender gets as a pool")
+    private int nodes = 1;
+
+    @Parameter(names = { "--node-latency" }, description = "Comma separated latency of every node (in milliseconds), --latency for the rest")
+    private String nodeLatency = "";
+
+    @Parameter(names = { "--node-error-rate" }, description = "Comma separated error rate of every node, --error-rate for the rest")
+    private String nodeErrorRate = "";
+
+    @Parameter(names = { "--latency" }, description = "Average mock node response time (in milliseconds)")
+    private long latency = 20;
+
+    @Parameter(names = { "--error-rate" }, description = "Share of HTTP requests that fail with 503")
+    private double errorRate = 0;
+
+    @Parameter(names = { "--drop-rate" }, description = "Share of accepted transactions that are never mined")
+    private double dropRate = 0;
+
+    @Parameter(names = { "--revert-rate" }, description = "Share of mined transactions that revert")
+    private double revertRate = 0;
+
+    @Parameter(names = { "--decimals" }, description = "Token decimals; amounts have two fraction digits, so fewer makes rows fail")
+    private int decimals = 18;
+
+    @Parameter(names = { "--token-balance" }, description = "Tokens of every holder, including the sender accounts; 0 for a practically unlimited balance")
+    private long tokenBalance = 0;
+
+    @Parameter(names = { "--paid-rows" }, description = "Rows paid before the sender starts, which it must find on chain and skip")
+    private int paidRows = 0;
+
+    @Parameter(names = { "--timeout" }, description = "Longest run time (in seconds)")
+    private long timeout = 600;
+
+    @Parameter(names = { "--sender" }, description = "Extra options for the sender, e.g. \"-b 20 --max-rate 500\"")
+    private String senderArgs = "";
+
+    public int getRows() {
+        return rows;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    public long getBlockTime() {
+        return blockTime;
+    }
+
+    public long getBlockGasLimit() {
+        return blockGasLimit;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public List<Long> getNodeLatencies() {
+        List<Long> latencies = new ArrayList<>();
+        for (String value : split(nodeLatency)) {
+            latencies.add(Long.parseLong(value));
+        }
+        while (latencies.size() < nodes) {
+            latencies.add(latency);
+        }
+        return latencies;
+    }
+
+    public List<Double> getNodeErrorRates() {
+        List<Double> rates = new ArrayList<>();
+        for (String value : split(nodeErrorRate)) {
+            rates.add(Double.parseDouble(value));
+        }
+        while (rates.size() < nodes) {
+            rates.add(errorRate);
+        }
+        return rates;
+    }
+
+    private static List<String> split(String values) {
+        List<String> parts = new ArrayList<>();
+        for (String value : values.split(",")) {
+            if(!value.trim().isEmpty()) {
+                parts.add(value.trim());
+            }
+        }
+        return parts;
+    }
+
+    public long getLatency() {
+        return latency;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public double getDropRate() {
+        return dropRate;
+    }
+
+    public double getRevertRate() {
+        return revertRate;
+    }
+
+    public int getDecimals() {
+        return decimals;
+    }
+
+    public long getTokenBalance() {
+        return tokenBalance;
+    }
+
+    public int getPaidRows() {
+        return paidRows;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public String getSenderArgs() {
+        return senderArgs;
+    }
+}
@@ -0,0 +1,699 @@
+package ru.rb.eth.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.rlp.RlpDecoder;
+import org.web3j.rlp.RlpEncoder;
+import org.web3j.rlp.RlpList;
+import org.web3j.rlp.RlpString;
+import org.web3j.rlp.RlpType;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * In-process JSON-RPC node for load tests. It accepts signed legacy transactions, keeps a mempool per
+ * sender ordered by nonce and mines a block every {@code blockTimeMillis} up to the block gas limit.
+ * Token holders are the accounts added with {@link #addHolder} and every recipient of a mined transfer;
+ * {@code balanceOf} answers a large or the configured balance for them and zero for anyone else. A transfer to a holder
+ * costs 15000 gas less than one to a new holder, and runs out of gas and reverts when its gas limit is
+ * lower than that. A call without input is a plain ETH transfer of 21000 gas. Allowance is always large, decimals are 18 unless set, and every mined {@code transfer} call
+ * leaves a {@code Transfer} event that {@code eth_getLogs} can find.
+ *
+ * <p>Faults are injected at configurable rates: whole HTTP requests fail with 503 (WebSocket messages
+ * get a JSON-RPC error instead), accepted transactions are silently dropped from the mempool, and
+ * mined transfers revert with status 0x0.
+ */
+public class MockNode {
+
+    private static final String BALANCE_OF = "0x70a08231";
+    private static final String DECIMALS = "0x313ce567";
+    private static final long PLAIN_TRANSFER_GAS = 21_000;
+    private static final String ALLOWANCE = "0xdd62ed3e";
+    private static final String TRANSFER = "0xa9059cbb";
+    private static final String TRANSFER_TOPIC = Hash.sha3String("Transfer(address,address,uint256)");
+    private static final int MAX_LOGS = 10000;
+    private static final long HOLDER_DISCOUNT = 15_000;
+    private static final BigInteger BALANCE = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+    private static final int METHOD_NOT_FOUND = -32601;
+    private static final int SERVER_ERROR = -32000;
+    private static final int LIMIT_EXCEEDED = -32005;
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService miner;
+
+    private long blockTimeMillis = 1000;
+    private long blockGasLimit = 8_000_000;
+    private long gasPerTransfer = 51_000;
+    private long latencyMillis;
+    private double errorRate;
+    private double dropRate;
+    private double revertRate;
+    private int decimals = 18;
+    private BigInteger tokenBalance = BALANCE;
+    private BigInteger gasPrice = BigInteger.valueOf(20_000_000_000L);
+
+    private final Map<String, Map<Long, MockTx>> mempool = new HashMap<>();
+    private final Map<String, Long> nonces = new HashMap<>();
+    private final Map<String, MockTx> transactions = new ConcurrentHashMap<>();
+    private final List<List<String>> blocks = new ArrayList<>();
+    private final List<List<ObjectNode>> logs = new ArrayList<>();
+    private final Set<String> holders = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<JsonNode>> headListeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong mined = new AtomicLong();
+    private final AtomicLong reverted = new AtomicLong();
+
+    private Logger log;
+
+    public MockNode(int port) throws IOException {
+        log = LoggerFactory.getLogger(MockNode.class);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        handlers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "mock-node");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlers);
+        miner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mock-miner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        blocks.add(new ArrayList<>());
+        logs.add(new ArrayList<>());
+    }
+
+    public void start() {
+        server.start();
+        miner.scheduleAtFixedRate(this::mine, blockTimeMillis, blockTimeMillis, TimeUnit.MILLISECONDS);
+        log.info("Mock node listening on " + getUrl());
+    }
+
+    public void stop() {
+        miner.shutdownNow();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void setBlockTimeMillis(long blockTimeMillis) {
+        this.blockTimeMillis = blockTimeMillis;
+    }
+
+    public void setBlockGasLimit(long blockGasLimit) {
+        this.blockGasLimit = blockGasLimit;
+    }
+
+    public void setGasPerTransfer(long gasPerTransfer) {
+        this.gasPerTransfer = gasPerTransfer;
+    }
+
+    public void addHolder(String address) {
+        holders.add(address.toLowerCase());
+    }
+
+    /**
+     * Calls the listener with the header of every mined block.
+     */
+    public void addHeadListener(Consumer<JsonNode> listener) {
+        headListeners.add(listener);
+    }
+
+    /**
+     * Average delay before every response; the actual delay is spread between half and one and a half of it.
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public void setDropRate(double dropRate) {
+        this.dropRate = dropRate;
+    }
+
+    public void setRevertRate(double revertRate) {
+        this.revertRate = revertRate;
+    }
+
+    public void setTokenBalance(BigInteger tokenBalance) {
+        this.tokenBalance = tokenBalance;
+    }
+
+    public void setDecimals(int decimals) {
+        this.decimals = decimals;
+    }
+
+    public void setGasPrice(BigInteger gasPrice) {
+        this.gasPrice = gasPrice;
+    }
+
+    public String describe() {
+        synchronized (this) {
+            return "blocks " + (blocks.size() - 1) + " | requests " + requests + " | injected errors " + injectedErrors
+                    + " | accepted " + accepted + " | dropped " + dropped + " | mined " + mined + " | reverted " + reverted;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            delay();
+            if(injectError()) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            JsonNode request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = objectMapper.readTree(in);
+            }
+            JsonNode response = respond(request);
+
+            byte[] body = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Answers one message of a WebSocket connection, with the same latency and injected errors as HTTP.
+     */
+    JsonNode answer(JsonNode request) throws InterruptedException {
+        requests.incrementAndGet();
+        delay();
+        if(!injectError()) {
+            return respond(request);
+        }
+        if(!request.isArray()) {
+            return error(request, LIMIT_EXCEEDED, "request rate exceeded");
+        }
+        ArrayNode responses = objectMapper.createArrayNode();
+        for (JsonNode call : request) {
+            responses.add(error(call, LIMIT_EXCEEDED, "request rate exceeded"));
+        }
+        return responses;
+    }
+
+    ObjectNode error(JsonNode request, int code, String message) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        ObjectNode error = response.putObject("error");
+        error.put("code", code);
+        error.put("message", message);
+        return response;
+    }
+
+    private void delay() throws InterruptedException {
+        if(latencyMillis > 0) {
+            Thread.sleep(latencyMillis / 2 + ThreadLocalRandom.current().nextLong(latencyMillis + 1));
+        }
+    }
+
+    private boolean injectError() {
+        if(ThreadLocalRandom.current().nextDouble() < errorRate) {
+            injectedErrors.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Answers a request or a batch without latency or injected errors, as the node behind every front.
+     */
+    JsonNode respond(JsonNode request) {
+        if(!request.isArray()) {
+            return call(request);
+        }
+        ArrayNode responses = objectMapper.createArrayNode();
+        for (JsonNode call : request) {
+            responses.add(call(call));
+        }
+        return responses;
+    }
+
+    private ObjectNode call(JsonNode request) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        JsonNode params = request.path("params");
+        try {
+            response.set("result", dispatch(request.path("method").asText(), params));
+        } catch (RpcError e) {
+            return error(request, e.code, e.getMessage());
+        }
+        return response;
+    }
+
+    private JsonNode dispatch(String method, JsonNode params) throws RpcError {
+        switch (method) {
+            case "net_version":
+                return text("1337");
+            case "eth_blockNumber":
+                return text(Numeric.encodeQuantity(BigInteger.valueOf(getHead())));
+            case "eth_gasPrice":
+                return text(Numeric.encodeQuantity(gasPrice));
+            case "eth_call":
+                return text(ethCall(params.path(0).path("data").asText()));
+            case "eth_getBalance":
+                return text(Numeric.encodeQuantity(BALANCE));
+            case "eth_estimateGas":
+                return text(Numeric.encodeQuantity(BigInteger.valueOf(gasOf(params.path(0).path("data").asText()))));
+            case "eth_getTransactionCount":
+                return text(Numeric.encodeQuantity(BigInteger.valueOf(getTransactionCount(
+                        params.path(0).asText().toLowerCase(), "pending".equals(params.path(1).asText())))));
+            case "eth_sendRawTransaction":
+                return text(sendRawTransaction(params.path(0).asText()));
+            case "eth_getTransactionByHash":
+                return getTransaction(params.path(0).asText().toLowerCase());
+            case "eth_getTransactionReceipt":
+                return getReceipt(params.path(0).asText().toLowerCase());
+            case "eth_getBlockByNumber":
+                return getBlock(Numeric.decodeQuantity(params.path(0).asText()).longValueExact());
+            case "eth_getLogs":
+                return getLogs(params.path(0));
+            default:
+                throw new RpcError(METHOD_NOT_FOUND, "The method " + method + " does not exist/is not available");
+        }
+    }
+
+    private JsonNode text(String value) {
+        return objectMapper.getNodeFactory().textNode(value);
+    }
+
+    private String ethCall(String data) {
+        BigInteger result = BigInteger.ZERO;
+        if(data.startsWith(BALANCE_OF)) {
+            result = data.length() >= 74 && holders.contains("0x" + data.substring(34, 74)) ? tokenBalance : BigInteger.ZERO;
+        } else if(data.startsWith(ALLOWANCE)) {
+            result = BALANCE;
+        } else if(data.startsWith(DECIMALS)) {
+            result = BigInteger.valueOf(decimals);
+        }
+        return Numeric.toHexStringWithPrefixZeroPadded(result, 64);
+    }
+
+    private long gasOf(String input) {
+        if(input.equals("0x")) {
+            return PLAIN_TRANSFER_GAS;
+        }
+        if(isTransfer(input) && holders.contains(recipient(input))) {
+            return gasPerTransfer - HOLDER_DISCOUNT;
+        }
+        return gasPerTransfer;
+    }
+
+    private static boolean isTransfer(String input) {
+        return input.startsWith(TRANSFER) && input.length() >= 138;
+    }
+
+    private static String recipient(String input) {
+        return "0x" + input.substring(34, 74);
+    }
+
+    private synchronized long getHead() {
+        return blocks.size() - 1;
+    }
+
+    synchronized long getTransactionCount(String address, boolean pending) {
+        long nonce = nonces.getOrDefault(address, 0L);
+        Map<Long, MockTx> queued = mempool.get(address);
+        while (pending && queued != null && queued.containsKey(nonce)) {
+            nonce++;
+        }
+        return nonce;
+    }
+
+    /**
+     * Accepts a signed transaction without going through JSON-RPC.
+     *
+     * @throws IllegalArgumentException if the node rejects it
+     */
+    String submit(String signedTx) {
+        try {
+            return sendRawTransaction(signedTx);
+        } catch (RpcError e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    private String sendRawTransaction(String signedTx) throws RpcError {
+        MockTx tx = MockTx.decode(signedTx);
+        synchronized (this) {
+            MockTx known = transactions.get(tx.hash);
+            if(known != null && known.receipt == null) {
+                throw new RpcError(SERVER_ERROR, "already known");
+            }
+            if(tx.nonce < nonces.getOrDefault(tx.from, 0L)) {
+                throw new RpcError(SERVER_ERROR, "nonce too low");
+            }
+            Map<Long, MockTx> queued = mempool.computeIfAbsent(tx.from, from -> new HashMap<>());
+            MockTx previous = queued.get(tx.nonce);
+            if(previous != null && tx.gasPrice.multiply(BigInteger.TEN).compareTo(previous.gasPrice.multiply(BigInteger.valueOf(11))) < 0) {
+                throw new RpcError(SERVER_ERROR, "replacement transaction underpriced");
+            }
+            accepted.incrementAndGet();
+            if(ThreadLocalRandom.current().nextDouble() < dropRate) {
+                dropped.incrementAndGet();
+                return tx.hash;
+            }
+            if(previous != null) {
+                transactions.remove(previous.hash);
+            }
+            queued.put(tx.nonce, tx);
+            transactions.put(tx.hash, tx);
+        }
+        return tx.hash;
+    }
+
+    private JsonNode getTransaction(String hash) {
+        MockTx tx = transactions.get(hash);
+        if(tx == null) {
+            return objectMapper.getNodeFactory().nullNode();
+        }
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("hash", tx.hash);
+        node.put("nonce", Numeric.encodeQuantity(BigInteger.valueOf(tx.nonce)));
+        node.put("from", tx.from);
+        node.put("to", tx.to);
+        node.put("value", "0x0");
+        node.put("gas", Numeric.encodeQuantity(BigInteger.valueOf(tx.gasLimit)));
+        node.put("gasPrice", Numeric.encodeQuantity(tx.gasPrice));
+        node.put("input", tx.input);
+        ObjectNode receipt = tx.receipt;
+        if(receipt != null) {
+            node.set("blockNumber", receipt.get("blockNumber"));
+            node.set("blockHash", receipt.get("blockHash"));
+            node.set("transactionIndex", receipt.get("transactionIndex"));
+        }
+        return node;
+    }
+
+    private JsonNode getReceipt(String hash) {
+        MockTx tx = transactions.get(hash);
+        if(tx == null || tx.receipt == null) {
+            return objectMapper.getNodeFactory().nullNode();
+        }
+        return tx.receipt;
+    }
+
+    private synchronized JsonNode getBlock(long number) {
+        if(number < 0 || number >= blocks.size()) {
+            return objectMapper.getNodeFactory().nullNode();
+        }
+        ObjectNode block = header(number);
+        ArrayNode hashes = block.putArray("transactions");
+        for (String hash : blocks.get((int) number)) {
+            hashes.add(hash);
+        }
+        return block;
+    }
+
+    /**
+     * Transfer events in a block range, filtered by contract address and by topics, each topic being
+     * null, one value or a list of values. Fails like Infura when the answer would be too long.
+     */
+    private synchronized JsonNode getLogs(JsonNode filter) throws RpcError {
+        long head = blocks.size() - 1;
+        long from = block(filter.path("fromBlock"), head);
+        long to = Math.min(block(filter.path("toBlock"), head), head);
+        String address = filter.path("address").asText(null);
+        JsonNode topics = filter.path("topics");
+
+        ArrayNode result = objectMapper.createArrayNode();
+        for (long number = Math.max(0, from); number <= to; number++) {
+            for (ObjectNode event : logs.get((int) number)) {
+                if(address != null && !address.equalsIgnoreCase(event.path("address").asText()) || !matches(topics, event.path("topics"))) {
+                    continue;
+                }
+                if(result.size() == MAX_LOGS) {
+                    throw new RpcError(LIMIT_EXCEEDED, "query returned more than " + MAX_LOGS + " results");
+                }
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    private static long block(JsonNode tag, long head) {
+        if(tag.isMissingNode() || tag.isNull() || tag.asText().equals("latest") || tag.asText().equals("pending")) {
+            return head;
+        }
+        if(tag.asText().equals("earliest")) {
+            return 0;
+        }
+        return Numeric.decodeQuantity(tag.asText()).longValueExact();
+    }
+
+    private static boolean matches(JsonNode filter, JsonNode topics) {
+        for (int i = 0; i < filter.size(); i++) {
+            JsonNode wanted = filter.get(i);
+            if(wanted.isNull()) {
+                continue;
+            }
+            String topic = topics.path(i).asText();
+            boolean found = !wanted.isArray() && wanted.asText().equalsIgnoreCase(topic);
+            for (JsonNode value : wanted) {
+                found |= value.asText().equalsIgnoreCase(topic);
+            }
+            if(!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ObjectNode header(long number) {
+        ObjectNode header = objectMapper.createObjectNode();
+        header.put("number", Numeric.encodeQuantity(BigInteger.valueOf(number)));
+        header.put("hash", blockHash(number));
+        header.put("parentHash", number == 0 ? Numeric.toHexStringWithPrefixZeroPadded(BigInteger.ZERO, 64) : blockHash(number - 1));
+        header.put("gasLimit", Numeric.encodeQuantity(BigInteger.valueOf(blockGasLimit)));
+        return header;
+    }
+
+    private void mine() {
+        long number = mineBlock();
+        JsonNode header = header(number);
+        for (Consumer<JsonNode> listener : headListeners) {
+            try {
+                listener.accept(header);
+            } catch (RuntimeException e) {
+                log.error("", e);
+            }
+        }
+    }
+
+    /**
+     * Takes the next nonce of every sender in turn until the block is full, so that all senders progress.
+     */
+    private synchronized long mineBlock() {
+        long number = blocks.size();
+        List<String> included = new ArrayList<>();
+        List<ObjectNode> blockLogs = new ArrayList<>();
+        long gasLeft = blockGasLimit;
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (Map.Entry<String, Map<Long, MockTx>> entry : mempool.entrySet()) {
+                long nonce = nonces.getOrDefault(entry.getKey(), 0L);
+                MockTx tx = entry.getValue().get(nonce);
+                if(tx == null) {
+                    continue;
+                }
+                long needed = gasOf(tx.input);
+                long gas = Math.min(tx.gasLimit, needed);
+                if(gas > gasLeft) {
+                    continue;
+                }
+                gasLeft -= gas;
+                entry.getValue().remove(nonce);
+                nonces.put(entry.getKey(), nonce + 1);
+                boolean success = tx.gasLimit >= needed && ThreadLocalRandom.current().nextDouble() >= revertRate;
+                tx.receipt = receipt(tx, number, included.size(), blockGasLimit - gasLeft, gas, success);
+                if(success && isTransfer(tx.input)) {
+                    holders.add(recipient(tx.input));
+                    ObjectNode event = transferEvent(tx, number, blockLogs.size());
+                    blockLogs.add(event);
+                    tx.receipt.withArray("logs").add(event);
+                }
+                included.add(tx.hash);
+                mined.incrementAndGet();
+                if(!success) {
+                    reverted.incrementAndGet();
+                }
+                progress = true;
+            }
+        }
+        blocks.add(included);
+        logs.add(blockLogs);
+        return number;
+    }
+
+    private ObjectNode receipt(MockTx tx, long number, int index, long cumulativeGas, long gas, boolean success) {
+        ObjectNode receipt = objectMapper.createObjectNode();
+        receipt.put("transactionHash", tx.hash);
+        receipt.put("transactionIndex", Numeric.encodeQuantity(BigInteger.valueOf(index)));
+        receipt.put("blockNumber", Numeric.encodeQuantity(BigInteger.valueOf(number)));
+        receipt.put("blockHash", blockHash(number));
+        receipt.put("from", tx.from);
+        receipt.put("to", tx.to);
+        receipt.put("cumulativeGasUsed", Numeric.encodeQuantity(BigInteger.valueOf(cumulativeGas)));
+        receipt.put("gasUsed", Numeric.encodeQuantity(BigInteger.valueOf(gas)));
+        receipt.put("status", success ? "0x1" : "0x0");
+        receipt.putNull("contractAddress");
+        receipt.putArray("logs");
+        receipt.put("logsBloom", "0x" + zeros(512));
+        return receipt;
+    }
+
+    private ObjectNode transferEvent(MockTx tx, long number, int index) {
+        ObjectNode event = objectMapper.createObjectNode();
+        event.put("address", tx.to);
+        ArrayNode topics = event.putArray("topics");
+        topics.add(TRANSFER_TOPIC);
+        topics.add("0x" + zeros(24) + tx.from.substring(2));
+        topics.add("0x" + zeros(24) + recipient(tx.input).substring(2));
+        event.put("data", "0x" + tx.input.substring(74, 138));
+        event.put("blockNumber", Numeric.encodeQuantity(BigInteger.valueOf(number)));
+        event.put("blockHash", blockHash(number));
+        event.put("transactionHash", tx.hash);
+        event.put("transactionIndex", tx.receipt.get("transactionIndex").asText());
+        event.put("logIndex", Numeric.encodeQuantity(BigInteger.valueOf(index)));
+        event.put("removed", false);
+        return event;
+    }
+
+    private static String zeros(int count) {
+        return new String(new char[count]).replace('\0', '0');
+    }
+
+    private static String blockHash(long number) {
+        return Hash.sha3(Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(number), 64));
+    }
+
+    private static class MockTx {
+
+        private final String hash;
+        private final String from;
+        private final String to;
+        private final long nonce;
+        private final BigInteger gasPrice;
+        private final long gasLimit;
+        private final String input;
+        private volatile ObjectNode receipt;
+
+        private MockTx(String hash, String from, String to, long nonce, BigInteger gasPrice, long gasLimit, String input) {
+            this.hash = hash;
+            this.from = from;
+            this.to = to;
+            this.nonce = nonce;
+            this.gasPrice = gasPrice;
+            this.gasLimit = gasLimit;
+            this.input = input;
+        }
+
+        /**
+         * Decodes a signed legacy transaction {@code [nonce, gasPrice, gas, to, value, data, v, r, s]}
+         * and recovers its sender.
+         */
+        private static MockTx decode(String signedTx) throws RpcError {
+            try {
+                RlpList fields = (RlpList) RlpDecoder.decode(Numeric.hexStringToByteArray(signedTx)).getValues().get(0);
+                List<RlpType> values = fields.getValues();
+                if(values.size() != 9) {
+                    throw new RpcError(SERVER_ERROR, "invalid transaction");
+                }
+                byte[] unsigned = RlpEncoder.encode(new RlpList(values.subList(0, 6)));
+                Sign.SignatureData signature = new Sign.SignatureData(
+                        bytes(values.get(6))[0], pad(bytes(values.get(7))), pad(bytes(values.get(8))));
+                String from = "0x" + Keys.getAddress(Sign.signedMessageToKey(unsigned, signature));
+
+                return new MockTx(Hash.sha3(signedTx).toLowerCase(), from,
+                        Numeric.toHexString(bytes(values.get(3))),
+                        Numeric.toBigInt(bytes(values.get(0))).longValueExact(),
+                        Numeric.toBigInt(bytes(values.get(1))),
+                        Numeric.toBigInt(bytes(values.get(2))).longValueExact(),
+                        Numeric.toHexString(((RlpString) values.get(5)).getBytes()));
+            } catch (SignatureException | RuntimeException e) {
+                throw new RpcError(SERVER_ERROR, "invalid transaction: " + e.getMessage());
+            }
+        }
+
+        private static byte[] bytes(RlpType value) {
+            byte[] bytes = ((RlpString) value).getBytes();
+            return bytes.length == 0 ? new byte[1] : bytes;
+        }
+
+        private static byte[] pad(byte[] bytes) {
+            byte[] padded = new byte[32];
+            System.arraycopy(bytes, 0, padded, 32 - bytes.length, bytes.length);
+            return padded;
+        }
+    }
+
+    private static class RpcError extends Exception {
+
+        private final int code;
+
+        private RpcError(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+}
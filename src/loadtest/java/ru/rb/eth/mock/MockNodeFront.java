@@ -0,0 +1,113 @@
+package ru.rb.eth.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.ObjectMapperFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One more HTTP JSON-RPC node of the same {@link MockNode} chain, with its own latency and share of requests
+ * that fail with 503; half of those reach the chain before the response is lost. Several fronts act like a pool
+ * of providers that see the same blocks and mempool, so a call retried on another node finds the transactions
+ * the first one accepted.
+ */
+public class MockNodeFront {
+
+    private final MockNode node;
+    private final long latencyMillis;
+    private final double errorRate;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    private Logger log;
+
+    public MockNodeFront(MockNode node, long latencyMillis, double errorRate) throws IOException {
+        log = LoggerFactory.getLogger(MockNodeFront.class);
+
+        this.node = node;
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        handlers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "mock-front");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlers);
+    }
+
+    public void start() {
+        server.start();
+        log.info("Mock node front listening on " + getUrl() + ", latency " + latencyMillis + " ms, error rate " + errorRate);
+    }
+
+    public void stop() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public String describe() {
+        return getUrl() + ": requests " + requests + " | injected errors " + injectedErrors;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if(latencyMillis > 0) {
+                Thread.sleep(latencyMillis / 2 + ThreadLocalRandom.current().nextLong(latencyMillis + 1));
+            }
+            double error = ThreadLocalRandom.current().nextDouble();
+            if(error < errorRate / 2) {
+                injectedErrors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            JsonNode request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = objectMapper.readTree(in);
+            }
+            JsonNode response = node.respond(request);
+            if(error < errorRate) {
+                injectedErrors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            byte[] body = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+}
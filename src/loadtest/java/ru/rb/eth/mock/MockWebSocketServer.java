@@ -0,0 +1,330 @@
+package ru.rb.eth.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.utils.Numeric;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket front of a {@link MockNode}. Every message is answered on its own thread, so answers come back
+ * out of order the way a real node pipelines them. {@code eth_subscribe} to {@code newHeads} is handled per
+ * connection and pushes the header of every mined block.
+ *
+ * <p>Speaks the plain RFC 6455 subset a JSON-RPC client needs: text and continuation frames, ping and close.
+ */
+public class MockWebSocketServer {
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int TEXT = 0x1;
+    private static final int CLOSE = 0x8;
+    private static final int PING = 0x9;
+    private static final int PONG = 0xa;
+
+    private final MockNode node;
+    private final ServerSocket serverSocket;
+    private final ExecutorService handlers;
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong nextSubscription = new AtomicLong();
+    private final AtomicLong pushed = new AtomicLong();
+
+    private Logger log;
+
+    public MockWebSocketServer(MockNode node, int port) throws IOException {
+        log = LoggerFactory.getLogger(MockWebSocketServer.class);
+
+        this.node = node;
+        serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        handlers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "mock-ws");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        node.addHeadListener(this::onHead);
+        Thread thread = new Thread(this::accept, "mock-ws-accept");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Mock node listening on " + getUrl());
+    }
+
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.error("", e);
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        handlers.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "ws://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    public String describe() {
+        return "connections " + connections.size() + " | pushed heads " + pushed;
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                handlers.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if(!serverSocket.isClosed()) {
+                    log.error("", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Connection connection = null;
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            String key = readHandshake(in);
+            if(key == null) {
+                socket.close();
+                return;
+            }
+            connection = new Connection(socket);
+            connection.writeRaw(("HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + accept(key) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            connections.add(connection);
+
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            while (true) {
+                int first = in.read();
+                if(first < 0) {
+                    break;
+                }
+                boolean fin = (first & 0x80) != 0;
+                int opcode = first & 0x0f;
+                byte[] payload = readPayload(in);
+                if(opcode == CLOSE) {
+                    connection.send(CLOSE, payload);
+                    break;
+                } else if(opcode == PING) {
+                    connection.send(PONG, payload);
+                } else if(opcode == TEXT || opcode == 0) {
+                    message.write(payload);
+                    if(fin) {
+                        String text = new String(message.toByteArray(), StandardCharsets.UTF_8);
+                        message.reset();
+                        Connection from = connection;
+                        handlers.execute(() -> handle(from, text));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // the client went away
+        } finally {
+            if(connection != null) {
+                connections.remove(connection);
+                connection.close();
+            }
+        }
+    }
+
+    private static String readHandshake(InputStream in) throws IOException {
+        String key = null;
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            int c = in.read();
+            if(c < 0) {
+                return null;
+            }
+            if(c != '\n') {
+                if(c != '\r') {
+                    line.append((char) c);
+                }
+                continue;
+            }
+            if(line.length() == 0) {
+                return key;
+            }
+            int colon = line.indexOf(":");
+            if(colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                key = line.substring(colon + 1).trim();
+            }
+            line.setLength(0);
+        }
+    }
+
+    private static String accept(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return Base64.getEncoder().encodeToString(sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the length, mask and payload of a client frame and unmasks it.
+     */
+    private static byte[] readPayload(DataInputStream in) throws IOException {
+        int second = in.readUnsignedByte();
+        long length = second & 0x7f;
+        if(length == 126) {
+            length = in.readUnsignedShort();
+        } else if(length == 127) {
+            length = in.readLong();
+        }
+        byte[] mask = new byte[4];
+        boolean masked = (second & 0x80) != 0;
+        if(masked) {
+            in.readFully(mask);
+        }
+        byte[] payload = new byte[Math.toIntExact(length)];
+        in.readFully(payload);
+        if(masked) {
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] ^= mask[i & 3];
+            }
+        }
+        return payload;
+    }
+
+    private void handle(Connection connection, String text) {
+        try {
+            JsonNode request = objectMapper.readTree(text);
+            JsonNode response;
+            String method = request.path("method").asText();
+            if(method.equals("eth_subscribe")) {
+                response = subscribe(connection, request);
+            } else if(method.equals("eth_unsubscribe")) {
+                response = result(request, connection.subscriptions.remove(request.path("params").path(0).asText()) != null);
+            } else {
+                response = node.answer(request);
+            }
+            connection.send(TEXT, objectMapper.writeValueAsBytes(response));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    private JsonNode subscribe(Connection connection, JsonNode request) {
+        String kind = request.path("params").path(0).asText();
+        if(!kind.equals("newHeads")) {
+            return node.error(request, -32602, "unsupported subscription " + kind);
+        }
+        String id = Numeric.encodeQuantity(BigInteger.valueOf(nextSubscription.incrementAndGet()));
+        connection.subscriptions.put(id, kind);
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        response.put("result", id);
+        return response;
+    }
+
+    private JsonNode result(JsonNode request, boolean result) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        response.put("result", result);
+        return response;
+    }
+
+    private void onHead(JsonNode header) {
+        for (Connection connection : connections) {
+            for (String subscription : connection.subscriptions.keySet()) {
+                ObjectNode notification = objectMapper.createObjectNode();
+                notification.put("jsonrpc", "2.0");
+                notification.put("method", "eth_subscription");
+                ObjectNode params = notification.putObject("params");
+                params.put("subscription", subscription);
+                params.set("result", header);
+                try {
+                    connection.send(TEXT, objectMapper.writeValueAsBytes(notification));
+                    pushed.incrementAndGet();
+                } catch (IOException e) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private static class Connection {
+
+        private final Socket socket;
+        private final OutputStream out;
+        private final Map<String, String> subscriptions = new ConcurrentHashMap<>();
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        private synchronized void writeRaw(byte[] bytes) throws IOException {
+            out.write(bytes);
+            out.flush();
+        }
+
+        /**
+         * Writes one unmasked final frame.
+         */
+        private synchronized void send(int opcode, byte[] payload) throws IOException {
+            out.write(0x80 | opcode);
+            if(payload.length < 126) {
+                out.write(payload.length);
+            } else if(payload.length < 0x10000) {
+                out.write(126);
+                out.write(payload.length >>> 8);
+                out.write(payload.length);
+            } else {
+                out.write(127);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) ((long) payload.length >>> shift));
+                }
+            }
+            out.write(payload);
+            out.flush();
+        }
+
+        private void close() {
+            subscriptions.clear();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+}
@@ -4,31 +4,77 @@ import com.beust.jcommander.JCommander;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.web3j.crypto.Credentials;
+import org.web3j.crypto.WalletUtils;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
-import org.web3j.protocol.http.HttpService;
+import org.web3j.protocol.exceptions.TransactionException;
 import org.web3j.tx.Contract;
-import org.web3j.tx.FastRawTransactionManager;
+import org.web3j.utils.Convert;
+import org.web3j.utils.Numeric;
 import ru.rb.eth.contract.TestToken;
+import ru.rb.eth.journal.JournalReplay;
+import ru.rb.eth.journal.ProgressJournal;
+import ru.rb.eth.metrics.CostAccount;
+import ru.rb.eth.metrics.Metrics;
+import ru.rb.eth.metrics.MetricsServer;
 import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionSource;
 import ru.rb.eth.model.TransactionStatus;
+import ru.rb.eth.model.TransactionTable;
+import ru.rb.eth.model.TransferBatch;
+import ru.rb.eth.price.CachedPrice;
+import ru.rb.eth.price.PriceProvider;
+import ru.rb.eth.rpc.EndpointPool;
+import ru.rb.eth.send.BatchBroadcaster;
+import ru.rb.eth.send.Broadcaster;
+import ru.rb.eth.send.DisperseBatcher;
+import ru.rb.eth.send.DisperseBuilder;
+import ru.rb.eth.send.GasLimitEstimator;
+import ru.rb.eth.send.GasPriceStrategy;
+import ru.rb.eth.send.NonceManager;
+import ru.rb.eth.send.PreSigner;
+import ru.rb.eth.send.ReceiptTracker;
+import ru.rb.eth.send.RecipientAggregator;
+import ru.rb.eth.send.SendScheduler;
+import ru.rb.eth.send.SenderLane;
+import ru.rb.eth.send.TokenBudgets;
+import ru.rb.eth.send.TokenTransferBuilder;
+import ru.rb.eth.send.TransactionBuilder;
+import ru.rb.eth.send.TransactionSigner;
+import ru.rb.eth.send.TransferReconciler;
+import ru.rb.eth.send.TransferSender;
 import ru.rb.eth.util.Args;
-import ru.rb.eth.util.Util;
+import ru.rb.eth.xslx.CsvBook;
+import ru.rb.eth.xslx.ErrorCsv;
 import ru.rb.eth.xslx.ErrorExcel;
 import ru.rb.eth.xslx.Excel;
+import ru.rb.eth.xslx.ProgressBook;
+import ru.rb.eth.xslx.StreamingBook;
+import ru.rb.eth.xslx.StreamingExcel;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class Main {
 
+    private static final long BLOCK_POLL_MILLIS = 2000;
+    private static final long PUSHED_BLOCK_POLL_MILLIS = 15000;
+    private static final int RECEIPT_TIMEOUT_BLOCKS = 50;
+
     public static void main(String[] argv) {
 
         Args args = new Args();
@@ -42,144 +88,585 @@ public class Main {
 
     private Logger log;
 
-    private Excel excel;
-    private List<Transaction> errorTxs = new ArrayList<>();
+    private ProgressBook excel;
+    private ProgressJournal journal;
+    private TransactionSource source;
+    private final List<Transaction> errorTxs = Collections.synchronizedList(new ArrayList<>());
 
-    private int txCount;
-    private int pendingCount;
+    private AtomicInteger pendingCount = new AtomicInteger();
     private AtomicInteger performedCount = new AtomicInteger();
     private AtomicInteger errorCount = new AtomicInteger();
+    private AtomicBoolean finished = new AtomicBoolean();
+    private volatile Exception readError;
 
-    private BigDecimal gasPriceEth;
-    private AtomicLong totalGas = new AtomicLong();
+    private final CostAccount cost = new CostAccount();
+    private CachedPrice ethPrice;
 
-    private Timer dequeTimer;
+    private List<SenderLane> lanes = new ArrayList<>();
     private Timer progressTimer;
 
+    private Metrics metrics = new Metrics();
+    private MetricsServer metricsServer;
+
     private void start(Args args) {
         log = LoggerFactory.getLogger(Main.class);
 
         try {
 
-            excel = new Excel(args.getXlsxPath());
-            errorTxs.addAll(excel.parseSheet());
+            if(args.isReport()) {
+                writeReport(args.getXlsxPath());
+                return;
+            }
+
+            Excel fullExcel = null;
+            StreamingBook streamingExcel = null;
+            if(CsvBook.isCsv(args.getXlsxPath())) {
+                streamingExcel = new CsvBook(args.getXlsxPath());
+                excel = streamingExcel;
+            } else if(args.isStream()) {
+                streamingExcel = new StreamingExcel(args.getXlsxPath());
+                excel = streamingExcel;
+            } else {
+                fullExcel = new Excel(args.getXlsxPath());
+                excel = fullExcel;
+            }
+            Path journalPath = getJournalPath(excel);
+
+            TransactionTable rows = null;
+            if(args.isResume()) {
+                JournalReplay replay = JournalReplay.read(journalPath);
+                if(!replay.isParseComplete()) {
+                    log.error("Journal " + journalPath + " was written before parsing had finished. Start again without --resume");
+                    return;
+                }
+                for (Transaction transaction : replay.getRows()) {
+                    if(transaction.getStatus() == TransactionStatus.ERROR) {
+                        errorTxs.add(transaction);
+                    }
+                    excel.updateStatus(transaction);
+                }
+                rows = replay.getRows();
+                journal = ProgressJournal.append(journalPath, replay.getValidLength(), args.getJournalCommitTime());
+            } else {
+                String timeStamp = new SimpleDateFormat("dd-MM-HH.mm.ss").format(new Date());
+                journal = ProgressJournal.create(journalPath, timeStamp, args.getJournalCommitTime());
+                if(streamingExcel != null) {
+                    if(args.isMerge()) {
+                        log.warn("Rows can't be merged while the table is streamed, every row is sent on its own");
+                    }
+                    streamingExcel.setParsedListener(journal::append);
+                    source = streamingExcel;
+                } else {
+                    errorTxs.addAll(fullExcel.parseSheet());
+
+                    if(fullExcel.isHasErrors()) {
+                        log.warn("Errors occurred while parsing!");
+                        YNdialog();
+                    }
 
-            if(excel.isHasErrors()) {
-                log.warn("Errors occurred while parsing!");
-                YNdialog();
+                    for (Transaction transaction : fullExcel.getTable()) {
+                        journal.append(transaction);
+                    }
+                    journal.appendParseComplete();
+                    rows = fullExcel.getTable();
+                }
             }
+            log.info("Progress journal: " + journalPath);
 
-            ArrayDeque<Transaction> transactions = excel.getDeque();
-            txCount = transactions.size();
+            if(!args.getEthPrice().equals("none")) {
+                ethPrice = new CachedPrice(PriceProvider.of(args.getEthPrice()), args.getPriceTtl() * 1000L);
+                ethPrice.start();
+            }
 
-            Web3j web3 = Web3j.build(new HttpService(args.getUrl()));
-            Credentials credentials = Credentials.create(args.getPrivateKey());
+            EndpointPool endpointPool = new EndpointPool(args.getUrls());
+            endpointPool.setListener(metrics::onRpc);
+            endpointPool.start();
+            Web3j web3 = Web3j.build(endpointPool);
+            log.info("Nodes: " + endpointPool.size());
+            List<Credentials> credentialsList = loadCredentials(args);
 
-            log.info("Credentials loaded");
-            FastRawTransactionManager fastRawTransactionManager = new FastRawTransactionManager(web3, credentials);
+            log.info("Credentials loaded: " + credentialsList.size() + " sender accounts");
 
-            BigInteger gasPrice = web3.ethGasPrice().send().getGasPrice();
-            BigDecimal e18 = new BigDecimal("1000000000000000000");
-            gasPriceEth = new BigDecimal(gasPrice).divide(e18, 18, RoundingMode.UNNECESSARY);
+            BigInteger maxGasPrice = args.getMaxGasPrice() > 0 ? Convert.toWei(BigDecimal.valueOf(args.getMaxGasPrice()), Convert.Unit.GWEI).toBigInteger() : null;
+            GasPriceStrategy gasStrategy = new GasPriceStrategy(endpointPool, web3.ethGasPrice().send().getGasPrice(),
+                    args.getGasMultiplier(), maxGasPrice, args.getGasSampleTime() * 1000L);
+            gasStrategy.start();
+            BigInteger gasPrice = gasStrategy.getGasPrice();
+            log.info("Gas price: " + gasPrice + " wei");
 
             TestToken contract = TestToken.load(
                     args.getContractAdress(),
-                    web3, fastRawTransactionManager,
+                    web3, credentialsList.get(0),
                     gasPrice,
                     Contract.GAS_LIMIT);
 
-            BigInteger balance = contract.balanceOf(credentials.getAddress()).send();
-            if(balance.compareTo(excel.getTotalAmount()) < 0) {
-                log.warn("Insufficient funds!");
-                log.warn("Your balance: " + balance);
-                log.warn("Total tokens to send: " + excel.getTotalAmount());
-                YNdialog();
+            int decimals = contract.decimals().send().intValue();
+            BigDecimal dec = new BigDecimal("1" + String.join("", Collections.nCopies(decimals, "0")));
+
+            if(args.getReconcileFrom() > 0) {
+                List<String> senders = new ArrayList<>();
+                for (Credentials credentials : credentialsList) {
+                    senders.add(credentials.getAddress());
+                }
+                TransferReconciler reconciler = new TransferReconciler(endpointPool, args.getContractAdress(), senders, decimals);
+                reconciler.scan(args.getReconcileFrom(), web3.ethBlockNumber().send().getBlockNumber().longValueExact());
+                if(rows != null) {
+                    reconcile(rows, reconciler);
+                } else {
+                    source = skipPaid(source, reconciler);
+                }
             }
 
-            BigDecimal dec = new BigDecimal("1" + String.join("", Collections.nCopies(contract.decimals().send().intValue(), "0")));
+            BigInteger totalAmount = null;
+            if(rows != null) {
+                int pending = rows.countByStatus(TransactionStatus.PENDING);
+                if(pending != 0) {
+                    log.warn(pending + " transactions were sent before the restart but never confirmed. They will not be sent again");
+                }
+                int unsent = rows.countByStatus(TransactionStatus.PARSED);
+                if(args.isResume()) {
+                    log.info("Resuming with " + unsent + " unsent transactions");
+                }
+                if(unsent == 0) {
+                    log.info("Nothing left to send");
+                    journal.close();
+                    excel.writeBook(false);
+                    excel.closeBook();
+                    return;
+                }
+                totalAmount = rows.getTotalAmount(TransactionStatus.PARSED);
+                source = getSource(rows, args.isMerge());
+            }
 
-            dequeTimer = new Timer();
-            TimerTask dequeTask = new TimerTask() {
-                @Override
-                public void run() {
-                    if(transactions.size() == 0) {
-                        dequeTimer.cancel();
-                        dequeTimer.purge();
-                    } else {
-                        Transaction transaction = transactions.pop();
-                        contract.transfer(transaction.getTo(), transaction.getAmountDec().multiply(dec).toBigIntegerExact())
-                                .sendAsync()
-                                .thenAccept(transactionReceipt -> handleTransaction(transaction, transactionReceipt))
-                                .exceptionally(throwable -> handleException(transaction, throwable));
-
-                        transaction.updateStatus(TransactionStatus.PENDING);
-                        excel.updateStatus(transaction);
-
-                        if (++pendingCount % 10 == 0) {
-                            log.info("Tx sent: " + pendingCount + "/" + txCount);
+            List<BigInteger> balances = new ArrayList<>();
+            BigInteger balance = BigInteger.ZERO;
+            for (int i = 0; i < credentialsList.size(); i++) {
+                String address = credentialsList.get(i).getAddress();
+                BigInteger laneBalance = contract.balanceOf(address).send();
+                log.info("Lane " + i + " " + address + " balance: " + laneBalance);
+                balances.add(laneBalance);
+                balance = balance.add(laneBalance);
+            }
+            if(totalAmount != null) {
+                checkBalance(balance, totalAmount);
+            }
+            TokenBudgets budgets = new TokenBudgets(source, balances, dec);
+            budgets.setFailureListener(this::failRows);
+
+            GasLimitEstimator gasLimits = null;
+            if(args.getDisperseAddress() == null && args.getGasLimitMargin() > 0) {
+                gasLimits = new GasLimitEstimator(endpointPool, args.getContractAdress(), credentialsList.get(0).getAddress(),
+                        decimals, args.getGasLimitMargin(), Contract.GAS_LIMIT);
+                List<String> candidates = new ArrayList<>();
+                for (Credentials credentials : credentialsList.subList(1, credentialsList.size())) {
+                    candidates.add(credentials.getAddress());
+                }
+                if(rows != null) {
+                    for (Transaction transaction : rows) {
+                        candidates.add(transaction.getTo());
+                        if(candidates.size() >= 32) {
+                            break;
                         }
                     }
                 }
-            };
-            dequeTimer.schedule(dequeTask, 0L, args.getTxTime());
+                gasLimits.calibrate(candidates);
+                if(totalAmount != null) {
+                    checkGasBalance(web3, credentialsList, gasPrice.multiply(gasLimits.getMaxGasLimit()).multiply(BigInteger.valueOf(source.getTransactionCount())));
+                }
+            }
+
+            TransactionBuilder builder = new TokenTransferBuilder(args.getContractAdress(), Contract.GAS_LIMIT, decimals);
+            if(args.getDisperseAddress() != null) {
+                builder = new DisperseBuilder(args.getDisperseAddress(), args.getContractAdress(),
+                        BigInteger.valueOf(args.getDisperseGas()), dec);
+                log.info("Rows are sent through disperse contract " + args.getDisperseAddress());
+            }
+
+            Broadcaster broadcaster = signedTx -> web3.ethSendRawTransaction(signedTx).sendAsync();
+            if(args.getBatchSize() > 1) {
+                broadcaster = new BatchBroadcaster(endpointPool, args.getBatchSize(), args.getBatchLinger());
+                log.info("Transactions are sent in batches of up to " + args.getBatchSize());
+            }
+            ExecutorService signingPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "signer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            boolean pushedHeads = endpointPool.hasWebSocket();
+            ReceiptTracker receiptTracker = new ReceiptTracker(web3, endpointPool,
+                    pushedHeads ? PUSHED_BLOCK_POLL_MILLIS : BLOCK_POLL_MILLIS, RECEIPT_TIMEOUT_BLOCKS, args.getReplaceAfter());
+            receiptTracker.start();
+            if(pushedHeads) {
+                endpointPool.subscribeNewHeads(receiptTracker::onNewHead);
+            }
+
+            for (int i = 0; i < credentialsList.size(); i++) {
+                Credentials credentials = credentialsList.get(i);
+
+                DisperseBatcher batcher = null;
+                TransactionSource laneSource = budgets.forLane(i);
+                if(args.getDisperseAddress() != null) {
+                    TestToken laneContract = TestToken.load(args.getContractAdress(), web3, credentials, gasStrategy.getGasPrice(), Contract.GAS_LIMIT);
+                    approveDisperse(laneContract, credentials.getAddress(), args.getDisperseAddress(), balances.get(i));
+                    batcher = new DisperseBatcher(laneSource, args.getDisperseGas());
+                    laneSource = batcher;
+                }
+
+                NonceManager nonceManager = new NonceManager(web3, credentials.getAddress());
+                log.info("Lane " + i + " next nonce: " + nonceManager.getNext());
+                TransactionSigner signer = new TransactionSigner(credentials, builder, gasStrategy);
+                PreSigner preSigner = new PreSigner(laneSource, nonceManager, signer, Math.max(1, args.getMaxInFlight() / 2), signingPool, gasLimits);
+                TransferSender sender = new TransferSender(web3, broadcaster, nonceManager, receiptTracker, signer, gasStrategy);
+
+                SenderLane lane = new SenderLane(i, credentials.getAddress(), batcher);
+                preSigner.setFailureListener((transaction, throwable) -> handleException(lane, transaction, throwable));
+                preSigner.setFillerSender(sender::sendFiller);
+                SendScheduler scheduler = new SendScheduler(preSigner, transaction -> send(lane, sender, transaction),
+                        args.getMaxInFlight(), 1000.0 / args.getTxTime(), args.getMinRate(), args.getMaxRate());
+                scheduler.setGapFiller(sender::fillGap);
+                scheduler.setFailureListener((transaction, throwable) -> handleException(lane, transaction, throwable));
+                lane.setPipeline(preSigner, scheduler);
+                lanes.add(lane);
+            }
+            startMetrics(args.getMetricsPort(), gasStrategy, receiptTracker, endpointPool);
 
             progressTimer = new Timer();
             TimerTask progressTask = new TimerTask() {
                 @Override
                 public void run() {
-                    excel.writeBook(false);
+                    log.info("Progress: sent " + pendingCount + "/" + source.getTotalCount()
+                            + " | Processed: " + performedCount + " | Errors: " + errorCount);
+                    for (SenderLane lane : lanes) {
+                        log.info("Lane " + lane.getIndex() + ": sent " + lane.getSentCount()
+                                + " | In flight: " + lane.getScheduler().getInFlight()
+                                + String.format(" | Rate: %.2f tx/s", lane.getScheduler().getRate()));
+                    }
+                    log.info("Gas price: " + gasStrategy.getGasPrice() + " wei");
+                    BigDecimal costEth = cost.getEth();
+                    String costUsd = toUsd(costEth);
+                    log.info("Cost: gas " + cost.getGas() + " | ETH " + costEth.stripTrailingZeros().toPlainString()
+                            + (costUsd.isEmpty() ? "" : " | USD " + costUsd + " at " + ethPrice.get() + " USD/ETH, "
+                            + ethPrice.getAgeMillis() / 1000 + " s old"));
+                    if(endpointPool.size() > 1) {
+                        log.info("Nodes: " + endpointPool.describe());
+                    }
                 }
             };
             long totalDelay = args.getTime() * 1000L;
             progressTimer.schedule(progressTask, totalDelay, totalDelay);
+            for (SenderLane lane : lanes) {
+                lane.start();
+            }
+
+            if(rows == null) {
+                readStream(streamingExcel);
+            }
 
         } catch (Exception e) {
             log.error("", e);
         }
     }
 
-    private void handleTransaction(Transaction transaction, TransactionReceipt transactionReceipt) {
-        transaction.setHash(transactionReceipt.getTransactionHash());
-        if(transactionReceipt.getStatus().equals("0x0")) {
-            handleException(transaction, new Exception("Token Transfer Error (Token contract is locked or sender has an insufficient token balance)"));
-        } else {
-            transaction.updateStatus(TransactionStatus.CONFIRMED);
-            transaction.setGasUsed(transactionReceipt.getGasUsed());
-            totalGas.addAndGet(transactionReceipt.getGasUsed().longValueExact());
-            excel.updateStatus(transaction);
+    private CompletableFuture<TransactionReceipt> send(SenderLane lane, TransferSender sender, Transaction transaction) {
+        long now = System.nanoTime();
+        metrics.getSignLatency().record(transaction.getSignedAt() - transaction.getDequeuedAt());
+        metrics.getQueueLatency().record(now - transaction.getSignedAt());
+        transaction.setSentAt(now);
+        metrics.onSent();
+
+        for (Transaction row : transaction.getRows()) {
+            row.updateStatus(TransactionStatus.PENDING);
+            journal.append(row);
+            excel.updateStatus(row);
+        }
+
+        CompletableFuture<TransactionReceipt> future = sender.send(transaction);
+        future.thenAccept(transactionReceipt -> handleTransaction(lane, transaction, transactionReceipt))
+                .exceptionally(throwable -> handleException(lane, transaction, throwable));
+
+        lane.incrementSent();
+        int sent = pendingCount.incrementAndGet();
+        if (sent % 10 == 0) {
+            log.info("Tx sent: " + sent + "/" + source.getTotalCount());
+        }
+        return future;
+    }
+
+    private void startMetrics(int port, GasPriceStrategy gasStrategy, ReceiptTracker receiptTracker, EndpointPool endpointPool) throws Exception {
+        metrics.setInFlight(() -> lanes.stream().mapToInt(lane -> lane.getScheduler().getInFlight()).sum());
+        metrics.setSendRate(() -> lanes.stream().mapToDouble(lane -> lane.getScheduler().getRate()).sum());
+        metrics.setGasPrice(gasStrategy::getGasPrice);
+        metrics.setPendingReceipts(receiptTracker::getPendingCount);
+        metrics.setCost(cost);
+        metrics.setNodes(endpointPool::describe);
+        if(ethPrice != null) {
+            metrics.setEthPrice(ethPrice::get);
+        }
+        metrics.register();
+        if(port > 0) {
+            metricsServer = new MetricsServer(metrics, port);
+            metricsServer.start();
+            log.info("Metrics: http://127.0.0.1:" + metricsServer.getPort() + "/metrics");
+        }
+    }
+
+    private List<Credentials> loadCredentials(Args args) throws Exception {
+        List<Credentials> credentials = new ArrayList<>();
+        for (String privateKey : args.getPrivateKeys()) {
+            credentials.add(Credentials.create(privateKey));
+        }
+        if(args.getKeystoreDir() != null) {
+            File[] files = new File(args.getKeystoreDir()).listFiles(File::isFile);
+            if(files == null) {
+                throw new IOException("Keystore directory not found: " + args.getKeystoreDir());
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                credentials.add(WalletUtils.loadCredentials(args.getKeystorePassword(), file));
+            }
+        }
+        if(credentials.isEmpty()) {
+            throw new IllegalArgumentException("No private key or keystore provided");
+        }
+        return credentials;
+    }
+
+    private void readStream(StreamingBook streamingExcel) {
+        Thread readerThread = new Thread(() -> {
+            streamingExcel.read();
+            readError = streamingExcel.getReadError();
+            if(readError != null) {
+                log.error("Reading the table stopped after " + streamingExcel.getTotalCount() + " rows: " + readError.getMessage()
+                        + ". The rows after it are not sent");
+            } else {
+                journal.appendParseComplete();
+            }
+            errorTxs.addAll(streamingExcel.getParsingErrTxs());
+            if(streamingExcel.isHasErrors()) {
+                log.warn("Errors occurred while parsing! Rows with errors were skipped");
+            }
+            checkFinished(performedCount.get());
+        }, "table-reader");
+        readerThread.start();
+    }
 
-            checkFinished(performedCount.incrementAndGet());
+    private void reconcile(TransactionTable rows, TransferReconciler reconciler) {
+        List<Transaction> unsent = new ArrayList<>();
+        for (Transaction transaction : rows) {
+            if(transaction.getStatus() == TransactionStatus.PARSED || transaction.getStatus() == TransactionStatus.PENDING) {
+                unsent.add(transaction);
+            }
         }
+        int paid = reconciler.reconcile(unsent, (row, hash) -> {
+            rows.setConfirmed(row.getRowIndex(), Numeric.hexStringToByteArray(hash), 0);
+            markPaid(row, hash);
+        });
+        log.info(paid + " of " + unsent.size() + " unsent rows are already paid on chain");
     }
 
-    private Void handleException(Transaction transaction, Throwable throwable) {
-        errorTxs.add(transaction);
-        transaction.updateStatus(TransactionStatus.ERROR);
-        transaction.setErrorMsg(throwable.getMessage());
-        excel.updateStatus(transaction);
+    /**
+     * Passes on streamed rows that no transfer on chain has paid yet.
+     */
+    private TransactionSource skipPaid(TransactionSource source, TransferReconciler reconciler) {
+        AtomicInteger paid = new AtomicInteger();
+        return new TransactionSource() {
+            @Override
+            public synchronized Transaction poll() {
+                Transaction transaction;
+                while ((transaction = source.poll()) != null) {
+                    String hash = reconciler.match(transaction);
+                    if(hash == null) {
+                        return transaction;
+                    }
+                    markPaid(transaction, hash);
+                    if(paid.incrementAndGet() % 1000 == 0) {
+                        log.info("Rows already paid on chain: " + paid);
+                    }
+                    checkFinished(performedCount.incrementAndGet());
+                }
+                return null;
+            }
+
+            @Override
+            public boolean isExhausted() {
+                return source.isExhausted();
+            }
+
+            @Override
+            public int getTotalCount() {
+                return source.getTotalCount();
+            }
+        };
+    }
 
-        errorCount.incrementAndGet();
-        checkFinished(performedCount.incrementAndGet());
+    private void markPaid(Transaction row, String hash) {
+        row.setHash(hash);
+        row.setGasUsed(BigInteger.ZERO);
+        row.updateStatus(TransactionStatus.CONFIRMED);
+        journal.append(row);
+        excel.updateStatus(row);
+    }
 
+    private ArrayDeque<Transaction> merge(ArrayDeque<Transaction> transactions) {
+        ArrayDeque<Transaction> merged = RecipientAggregator.aggregate(transactions);
+        log.info(transactions.size() + " rows merged into " + merged.size() + " transfers");
+        return merged;
+    }
+
+    private Path getJournalPath(ProgressBook book) {
+        return Paths.get(book.getProgressDirPath().toString(), book.getBookName() + ".journal");
+    }
+
+    /**
+     * Rows still to send. Unmerged rows stay in the table until a lane takes them.
+     */
+    private TransactionSource getSource(TransactionTable rows, boolean merge) {
+        if(!merge) {
+            return rows.source();
+        }
+        return TransactionSource.of(merge(rows.toDeque(TransactionStatus.PARSED)));
+    }
+
+    private void writeReport(String xlsxPath) throws IOException {
+        ProgressBook report = CsvBook.isCsv(xlsxPath) ? new CsvBook(xlsxPath) : new Excel(xlsxPath);
+        JournalReplay replay = JournalReplay.read(getJournalPath(report));
+        for (Transaction transaction : replay.getRows()) {
+            report.updateStatus(transaction);
+        }
+        log.info("Confirmed: " + replay.countByStatus(TransactionStatus.CONFIRMED)
+                + " | Pending: " + replay.countByStatus(TransactionStatus.PENDING)
+                + " | Errors: " + replay.countByStatus(TransactionStatus.ERROR)
+                + " | Not sent: " + replay.countByStatus(TransactionStatus.PARSED));
+        report.writeBook(false);
+        report.closeBook();
+    }
+
+    private void checkBalance(BigInteger balance, BigInteger totalAmount) throws IOException {
+        if(balance.compareTo(totalAmount) < 0) {
+            log.warn("Insufficient funds!");
+            log.warn("Your balance: " + balance);
+            log.warn("Total tokens to send: " + totalAmount);
+            YNdialog();
+        }
+    }
+
+    /**
+     * Warns when the sender accounts together hold less ETH than the gas of all transfers at their highest limit.
+     */
+    private void checkGasBalance(Web3j web3, List<Credentials> credentialsList, BigInteger maxFee) throws IOException {
+        BigInteger balance = BigInteger.ZERO;
+        for (Credentials credentials : credentialsList) {
+            balance = balance.add(web3.ethGetBalance(credentials.getAddress(), DefaultBlockParameterName.LATEST).send().getBalance());
+        }
+        log.info("ETH for gas: up to " + Convert.fromWei(new BigDecimal(maxFee), Convert.Unit.ETHER).stripTrailingZeros().toPlainString()
+                + ", balance " + Convert.fromWei(new BigDecimal(balance), Convert.Unit.ETHER).stripTrailingZeros().toPlainString());
+        if(balance.compareTo(maxFee) < 0) {
+            log.warn("The sender accounts may run out of ETH for gas at the current gas price!");
+            YNdialog();
+        }
+    }
+
+    private void approveDisperse(TestToken contract, String owner, String disperseAddress, BigInteger amount) throws Exception {
+        BigInteger allowance = contract.allowance(owner, disperseAddress).send();
+        if(allowance.compareTo(amount) >= 0) {
+            return;
+        }
+        log.warn("Disperse contract is allowed to spend " + allowance + " tokens, the balance is " + amount);
+        log.warn("An approve transaction for the whole balance will be sent");
+        YNdialog();
+        TransactionReceipt receipt = contract.approve(disperseAddress, amount).send();
+        if(receipt.getStatus().equals("0x0")) {
+            throw new TransactionException("Approve transaction failed: " + receipt.getTransactionHash());
+        }
+        log.info("Disperse contract approved: " + receipt.getTransactionHash());
+    }
+
+    private void handleTransaction(SenderLane lane, Transaction transaction, TransactionReceipt transactionReceipt) {
+        long now = System.nanoTime();
+        metrics.getBroadcastLatency().record(transaction.getAcceptedAt() - transaction.getSentAt());
+        metrics.getConfirmLatency().record(now - transaction.getAcceptedAt());
+        metrics.getTotalLatency().record(now - transaction.getDequeuedAt());
+
+        BigInteger gasUsed = transactionReceipt.getGasUsed();
+        cost.record(gasUsed.longValueExact(), transaction.getGasPrice());
+        lane.addGas(gasUsed.longValueExact(), transaction.getGasPrice());
+
+        if(transactionReceipt.getStatus().equals("0x0")) {
+            if(transaction instanceof TransferBatch && lane.getBatcher().onReverted((TransferBatch) transaction)) {
+                return;
+            }
+            transaction.setHash(transactionReceipt.getTransactionHash());
+            failRows(transaction, new Exception("Token Transfer Error (Token contract is locked or sender has an insufficient token balance)"));
+            return;
+        }
+
+        List<Transaction> rows = transaction.getRows();
+        BigInteger[] share = gasUsed.divideAndRemainder(BigInteger.valueOf(rows.size()));
+        for (int i = 0; i < rows.size(); i++) {
+            Transaction row = rows.get(i);
+            row.setHash(transactionReceipt.getTransactionHash());
+            row.updateStatus(TransactionStatus.CONFIRMED);
+            row.setGasUsed(i == 0 ? share[0].add(share[1]) : share[0]);
+            journal.append(row);
+            excel.updateStatus(row);
+        }
+        metrics.onConfirmed(rows.size());
+        if(transaction instanceof TransferBatch) {
+            lane.getBatcher().onConfirmed((TransferBatch) transaction, gasUsed);
+        }
+
+        checkFinished(performedCount.addAndGet(rows.size()));
+    }
+
+    private Void handleException(SenderLane lane, Transaction transaction, Throwable throwable) {
+        if(transaction instanceof TransferBatch) {
+            lane.getBatcher().onFailed((TransferBatch) transaction);
+        }
+        failRows(transaction, throwable);
         return null;
     }
 
+    private void failRows(Transaction transaction, Throwable throwable) {
+        List<Transaction> rows = transaction.getRows();
+        for (Transaction row : rows) {
+            errorTxs.add(row);
+            row.setHash(transaction.getHash());
+            row.setErrorMsg(throwable.getMessage());
+            journal.append(row);
+            excel.updateStatus(row);
+        }
+
+        errorCount.addAndGet(rows.size());
+        metrics.onFailed(rows.size());
+        checkFinished(performedCount.addAndGet(rows.size()));
+    }
+
     private void checkFinished(int count) {
-        if(count == txCount) {
+        if(source.isExhausted() && count == source.getTotalCount() && finished.compareAndSet(false, true)) {
             progressTimer.cancel();
             progressTimer.purge();
+            journal.close();
+            if(metricsServer != null) {
+                metricsServer.stop();
+            }
 
-            log.info("Processed transactions: " + txCount + " | Errors: " + errorCount);
+            log.info("Processed transactions: " + count + " | Errors: " + errorCount);
+            if(readError != null) {
+                log.error("The run is incomplete: the table wasn't read to the end. Fix the table and start again with --reconcile-from to skip the rows already paid");
+            }
 
-            BigDecimal totalEth = gasPriceEth.multiply(new BigDecimal(totalGas.get()));
-            double usdPrice = Util.getEthPrice();
-            String totalGasStr = String.valueOf(totalGas);
+            BigDecimal totalEth = cost.getEth();
+            String totalGasStr = String.valueOf(cost.getGas());
             String totalEthStr = totalEth.stripTrailingZeros().toPlainString();
-            String totalUsdStr = "";
-            if(!Double.isNaN(usdPrice)) {
-                totalUsdStr = totalEth.multiply(new BigDecimal(usdPrice)).setScale(2, BigDecimal.ROUND_HALF_UP).toPlainString();
+            String totalUsdStr = toUsd(totalEth);
+            if(ethPrice != null) {
+                ethPrice.stop();
             }
 
+            for (SenderLane lane : lanes) {
+                log.info("Lane " + lane.getIndex() + " " + lane.getAddress() + ": gas " + lane.getTotalGas() + ", ETH "
+                        + Convert.fromWei(new BigDecimal(lane.getTotalWei()), Convert.Unit.ETHER).stripTrailingZeros().toPlainString());
+            }
             log.info("Total gas: " + totalGasStr);
             log.info("Total ETH: " + totalEthStr);
             log.info("Total USD: " + totalUsdStr);
@@ -195,9 +682,28 @@ public class Main {
         }
     }
 
+    /**
+     * @return the amount in USD at the cached ETH price, or an empty string while the price is unknown
+     */
+    private String toUsd(BigDecimal eth) {
+        double price = ethPrice == null ? Double.NaN : ethPrice.get();
+        if(Double.isNaN(price)) {
+            return "";
+        }
+        return eth.multiply(BigDecimal.valueOf(price)).setScale(2, BigDecimal.ROUND_HALF_UP).toPlainString();
+    }
+
     private void writeErrorTxs() {
+        List<Transaction> txs;
+        synchronized (errorTxs) {
+            txs = new ArrayList<>(errorTxs);
+        }
+        if(excel instanceof CsvBook) {
+            new ErrorCsv().write(txs, excel.getProgressDirPath(), excel.getBookName());
+            return;
+        }
         ErrorExcel errorExcel = new ErrorExcel();
-        errorExcel.add(errorTxs);
+        errorExcel.add(txs);
         errorExcel.writeBook(excel.getProgressDirPath(), excel.getBookName());
         errorExcel.closeBook();
     }
@@ -0,0 +1,65 @@
+package ru.rb.eth.contract;
+
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.crypto.Credentials;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.RemoteCall;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.tx.Contract;
+import org.web3j.tx.TransactionManager;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Disperse contract (disperse.app): pays many recipients in one call with {@code transferFrom} from the
+ * sender, who must approve the contract on the token first.
+ */
+public class Disperse extends Contract {
+
+    private Disperse(String contractAddress, Web3j web3j, Credentials credentials, BigInteger gasPrice, BigInteger gasLimit) {
+        super("", contractAddress, web3j, credentials, gasPrice, gasLimit);
+    }
+
+    private Disperse(String contractAddress, Web3j web3j, TransactionManager transactionManager, BigInteger gasPrice, BigInteger gasLimit) {
+        super("", contractAddress, web3j, transactionManager, gasPrice, gasLimit);
+    }
+
+    public RemoteCall<TransactionReceipt> disperseToken(String _token, List<String> _recipients, List<BigInteger> _values) {
+        return executeRemoteCallTransaction(disperseTokenFunction(_token, _recipients, _values));
+    }
+
+    public static String encodeDisperseToken(String _token, List<String> _recipients, List<BigInteger> _values) {
+        return FunctionEncoder.encode(disperseTokenFunction(_token, _recipients, _values));
+    }
+
+    private static Function disperseTokenFunction(String _token, List<String> _recipients, List<BigInteger> _values) {
+        List<Address> recipients = new ArrayList<>(_recipients.size());
+        for (String recipient : _recipients) {
+            recipients.add(new Address(recipient));
+        }
+        List<Uint256> values = new ArrayList<>(_values.size());
+        for (BigInteger value : _values) {
+            values.add(new Uint256(value));
+        }
+        return new Function(
+                "disperseToken",
+                Arrays.asList(new Address(_token), new DynamicArray<>(recipients), new DynamicArray<>(values)),
+                Collections.emptyList());
+    }
+
+    public static Disperse load(String contractAddress, Web3j web3j, Credentials credentials, BigInteger gasPrice, BigInteger gasLimit) {
+        return new Disperse(contractAddress, web3j, credentials, gasPrice, gasLimit);
+    }
+
+    public static Disperse load(String contractAddress, Web3j web3j, TransactionManager transactionManager, BigInteger gasPrice, BigInteger gasLimit) {
+        return new Disperse(contractAddress, web3j, transactionManager, gasPrice, gasLimit);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.rb.eth.contract;
 
+import org.web3j.abi.FunctionEncoder;
 import org.web3j.abi.TypeReference;
 import org.web3j.abi.datatypes.Address;
 import org.web3j.abi.datatypes.Function;
@@ -50,11 +51,18 @@ public class TestToken extends Contract {
     }
 
     public RemoteCall<TransactionReceipt> transfer(String _to, BigInteger _value) {
-        final Function function = new Function(
-                "transfer", 
+        return executeRemoteCallTransaction(transferFunction(_to, _value));
+    }
+
+    public static String encodeTransfer(String _to, BigInteger _value) {
+        return FunctionEncoder.encode(transferFunction(_to, _value));
+    }
+
+    private static Function transferFunction(String _to, BigInteger _value) {
+        return new Function(
+                "transfer",
                 Arrays.asList(new Address(_to), new Uint256(_value)),
                 Collections.emptyList());
-        return executeRemoteCallTransaction(function);
     }
 
     public RemoteCall<BigInteger> balanceOf(String _owner) {
@@ -64,6 +72,21 @@ public class TestToken extends Contract {
         return executeRemoteCallSingleValueReturn(function, BigInteger.class);
     }
 
+    public RemoteCall<BigInteger> allowance(String _owner, String _spender) {
+        final Function function = new Function("allowance",
+                Arrays.asList(new Address(_owner), new Address(_spender)),
+                Collections.singletonList(new TypeReference<Uint256>() {}));
+        return executeRemoteCallSingleValueReturn(function, BigInteger.class);
+    }
+
+    public RemoteCall<TransactionReceipt> approve(String _spender, BigInteger _value) {
+        final Function function = new Function(
+                "approve",
+                Arrays.asList(new Address(_spender), new Uint256(_value)),
+                Collections.emptyList());
+        return executeRemoteCallTransaction(function);
+    }
+
     public static TestToken load(String contractAddress, Web3j web3j, Credentials credentials, BigInteger gasPrice, BigInteger gasLimit) {
         return new TestToken(contractAddress, web3j, credentials, gasPrice, gasLimit);
     }
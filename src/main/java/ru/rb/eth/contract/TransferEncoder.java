@@ -0,0 +1,138 @@
+package ru.rb.eth.contract;
+
+import org.web3j.crypto.Hash;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Encodes {@code transfer(address,uint256)} calldata straight from the sheet values. The selector is
+ * computed once, the amount string is scaled by moving its decimal point, and the hex text is written
+ * into a per-thread buffer, so a row costs one String allocation for amounts below 2^127 units.
+ */
+public class TransferEncoder {
+
+    private static final char[] SELECTOR = Hash.sha3String("transfer(address,uint256)").substring(2, 10).toCharArray();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int SELECTOR_OFFSET = 2;
+    private static final int ADDRESS_OFFSET = SELECTOR_OFFSET + 8 + 24;
+    private static final int VALUE_OFFSET = ADDRESS_OFFSET + 40;
+    private static final int LENGTH = VALUE_OFFSET + 64;
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> {
+        char[] buffer = new char[LENGTH];
+        buffer[0] = '0';
+        buffer[1] = 'x';
+        System.arraycopy(SELECTOR, 0, buffer, SELECTOR_OFFSET, SELECTOR.length);
+        return buffer;
+    });
+
+    private final int decimals;
+
+    public TransferEncoder(int decimals) {
+        this.decimals = decimals;
+    }
+
+    /**
+     * @param to     address with the 0x prefix
+     * @param amount token amount as written in the sheet, e.g. {@code 12.5}
+     * @throws ArithmeticException if the amount has more fraction digits than the token
+     */
+    public String encode(String to, String amount) {
+        char[] buffer = BUFFER.get();
+        for (int i = SELECTOR_OFFSET + 8; i < ADDRESS_OFFSET; i++) {
+            buffer[i] = '0';
+        }
+        if(to.length() != 42) {
+            throw new IllegalArgumentException("Invalid address: " + to);
+        }
+        for (int i = 0; i < 40; i++) {
+            buffer[ADDRESS_OFFSET + i] = Character.toLowerCase(to.charAt(i + 2));
+        }
+
+        if(!writeScaled(buffer, amount)) {
+            writeBigInteger(buffer, new BigDecimal(amount).movePointRight(decimals).toBigIntegerExact());
+        }
+        return new String(buffer);
+    }
+
+    /**
+     * Writes {@code new BigDecimal(amount).movePointRight(decimals).toBigIntegerExact()} as a 128-bit
+     * value kept in two longs. Returns false, leaving the value to the BigInteger path, for anything
+     * that doesn't fit or isn't a plain decimal number.
+     */
+    private boolean writeScaled(char[] buffer, String amount) {
+        long hi = 0;
+        long lo = 0;
+        int fractionDigits = -1;
+        int length = amount.length();
+        for (int i = 0; i < length || Math.max(0, fractionDigits) < decimals; i++) {
+            int digit;
+            if(i < length) {
+                char c = amount.charAt(i);
+                if(c == '.') {
+                    if(fractionDigits >= 0) {
+                        return false;
+                    }
+                    fractionDigits = 0;
+                    continue;
+                }
+                if(c < '0' || c > '9') {
+                    return false;
+                }
+                digit = c - '0';
+                if(fractionDigits >= 0 && ++fractionDigits > decimals) {
+                    if(digit != 0) {
+                        throw new ArithmeticException("Rounding necessary: " + amount);
+                    }
+                    continue;
+                }
+            } else {
+                digit = 0;
+                fractionDigits = Math.max(0, fractionDigits) + 1;
+            }
+            if(hi >>> 59 != 0) {
+                return false;
+            }
+            long lo8 = lo << 3;
+            long lo2 = lo << 1;
+            long hi10 = (hi << 3 | lo >>> 61) + (hi << 1 | lo >>> 63);
+            long lo10 = lo8 + lo2;
+            if(Long.compareUnsigned(lo10, lo8) < 0) {
+                hi10++;
+            }
+            lo = lo10 + digit;
+            if(Long.compareUnsigned(lo, lo10) < 0) {
+                hi10++;
+            }
+            hi = hi10;
+        }
+
+        for (int i = VALUE_OFFSET; i < LENGTH - 32; i++) {
+            buffer[i] = '0';
+        }
+        writeLong(buffer, LENGTH - 32, hi);
+        writeLong(buffer, LENGTH - 16, lo);
+        return true;
+    }
+
+    private static void writeLong(char[] buffer, int offset, long value) {
+        for (int i = offset + 15; i >= offset; i--) {
+            buffer[i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+
+    private static void writeBigInteger(char[] buffer, BigInteger value) {
+        if(value.signum() < 0 || value.bitLength() > 256) {
+            throw new ArithmeticException("Amount out of uint256 range: " + value);
+        }
+        String hex = value.toString(16);
+        int start = LENGTH - hex.length();
+        for (int i = VALUE_OFFSET; i < start; i++) {
+            buffer[i] = '0';
+        }
+        hex.getChars(0, hex.length(), buffer, start);
+    }
+}
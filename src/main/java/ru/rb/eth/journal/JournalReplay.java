@@ -0,0 +1,136 @@
+package ru.rb.eth.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rb.eth.model.TransactionStatus;
+import ru.rb.eth.model.TransactionTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Last known state of every row, rebuilt from a {@link ProgressJournal} in one sequential read of the mapped file
+ * into a {@link TransactionTable}.
+ */
+public class JournalReplay {
+
+    private final TransactionTable rows = new TransactionTable();
+
+    private boolean parseComplete;
+    private long validLength;
+    private int recordCount;
+
+    private JournalReplay() {
+    }
+
+    public static JournalReplay read(Path path) throws IOException {
+        Logger log = LoggerFactory.getLogger(JournalReplay.class);
+        JournalReplay replay = new JournalReplay();
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        long size = buffer.limit();
+
+        if(buffer.remaining() < 4 || buffer.getInt() != ProgressJournal.MAGIC) {
+            throw new IOException("Not a progress journal: " + path);
+        }
+
+        CRC32 crc = new CRC32();
+        replay.validLength = buffer.position();
+        while (buffer.remaining() >= 2) {
+            int start = buffer.position();
+            int length = buffer.getShort() & 0xffff;
+            if(buffer.remaining() < length + 4) {
+                break;
+            }
+            ByteBuffer record = buffer.duplicate();
+            record.limit(start + 2 + length);
+            crc.reset();
+            crc.update(record);
+            int expectedCrc = buffer.getInt(start + 2 + length);
+            if((int) crc.getValue() != expectedCrc) {
+                log.warn("Corrupted journal record at offset " + start + ", the rest of the journal is ignored");
+                break;
+            }
+            replay.apply(buffer);
+            buffer.position(start + 2 + length + 4);
+            replay.validLength = buffer.position();
+            replay.recordCount++;
+        }
+
+        if(replay.validLength != size) {
+            log.warn("Journal tail of " + (size - replay.validLength) + " bytes was not committed and is dropped");
+        }
+        log.info("Journal replayed: " + replay.recordCount + " records, " + replay.rows.getRowCount() + " rows in "
+                + replay.rows.getMemoryBytes() / 1024 + " KB");
+        return replay;
+    }
+
+    private void apply(ByteBuffer buffer) {
+        byte status = buffer.get();
+        int rowIndex = buffer.getInt();
+        if(status == ProgressJournal.PARSE_COMPLETE) {
+            parseComplete = true;
+            return;
+        }
+
+        if(status == TransactionStatus.PARSED) {
+            byte[] address = new byte[20];
+            buffer.get(address);
+            byte[] amount = new byte[buffer.getShort()];
+            buffer.get(amount);
+            rows.add(rowIndex, address, new String(amount, StandardCharsets.US_ASCII));
+            return;
+        }
+
+        switch (status) {
+            case TransactionStatus.PENDING:
+                rows.setStatus(rowIndex, TransactionStatus.PENDING);
+                break;
+            case TransactionStatus.CONFIRMED:
+                byte[] hash = readHash(buffer);
+                rows.setConfirmed(rowIndex, hash, buffer.getLong());
+                break;
+            case TransactionStatus.ERROR:
+                byte[] errorHash = buffer.get() == 1 ? readHash(buffer) : null;
+                byte[] error = new byte[buffer.getShort()];
+                buffer.get(error);
+                rows.setError(rowIndex, errorHash, new String(error, StandardCharsets.UTF_8));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static byte[] readHash(ByteBuffer buffer) {
+        byte[] hash = new byte[32];
+        buffer.get(hash);
+        return hash;
+    }
+
+    public boolean isParseComplete() {
+        return parseComplete;
+    }
+
+    public long getValidLength() {
+        return validLength;
+    }
+
+    /**
+     * Rows in sheet order. Rows that were parsed but never handed to the node are still {@link TransactionStatus#PARSED}.
+     */
+    public TransactionTable getRows() {
+        return rows;
+    }
+
+    public int countByStatus(int status) {
+        return rows.countByStatus(status);
+    }
+}
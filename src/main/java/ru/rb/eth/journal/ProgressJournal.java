@@ -0,0 +1,211 @@
+package ru.rb.eth.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.utils.Numeric;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of status transitions. Records are buffered in memory and written with a single
+ * fsync per commit interval, so callback threads never wait for the disk.
+ *
+ * <p>Record layout: {@code short length | byte status | int row | payload | int crc32}, where the
+ * payload depends on the status (see {@link #encode}). A torn record at the tail is ignored on replay.
+ */
+public class ProgressJournal implements Closeable {
+
+    static final int MAGIC = 0x45544a31; // "ETJ1"
+    static final byte PARSE_COMPLETE = 0;
+
+    private static final int MAX_ERROR_BYTES = 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ScheduledExecutorService flusher;
+
+    private final Object lock = new Object();
+    private ByteBuffer active = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer flushing = ByteBuffer.allocate(1 << 16);
+    private final CRC32 crc = new CRC32();
+
+    private Logger log;
+
+    private ProgressJournal(Path path, FileChannel channel, long commitMillis) {
+        log = LoggerFactory.getLogger(ProgressJournal.class);
+
+        this.path = path;
+        this.channel = channel;
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::commit, commitMillis, commitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a new journal. An existing journal at the same path is moved aside with the given suffix.
+     */
+    public static ProgressJournal create(Path path, String oldSuffix, long commitMillis) throws IOException {
+        if(Files.exists(path)) {
+            Files.move(path, path.resolveSibling(path.getFileName() + "." + oldSuffix));
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(4).putInt(MAGIC);
+        header.flip();
+        channel.write(header);
+        channel.force(true);
+        return new ProgressJournal(path, channel, commitMillis);
+    }
+
+    /**
+     * Reopens a journal for appending. Anything past {@code validLength} (a torn tail) is truncated.
+     */
+    public static ProgressJournal append(Path path, long validLength, long commitMillis) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        return new ProgressJournal(path, channel, commitMillis);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void append(Transaction transaction) {
+        synchronized (lock) {
+            encode(transaction.getStatus(), transaction);
+        }
+    }
+
+    public void appendParseComplete() {
+        synchronized (lock) {
+            encode(PARSE_COMPLETE, null);
+        }
+    }
+
+    private void encode(int status, Transaction tx) {
+        int payload = 0;
+        byte[] amount = null;
+        byte[] error = null;
+        if(tx != null) {
+            switch (tx.getStatus()) {
+                case TransactionStatus.PARSED:
+                    amount = tx.getAmount().getBytes(StandardCharsets.US_ASCII);
+                    payload = 20 + 2 + amount.length;
+                    break;
+                case TransactionStatus.CONFIRMED:
+                    payload = 32 + 8;
+                    break;
+                case TransactionStatus.ERROR:
+                    error = errorBytes(tx.getErrorMsg());
+                    payload = 1 + (tx.getHash() != null ? 32 : 0) + 2 + error.length;
+                    break;
+                default:
+                    break;
+            }
+        }
+        int length = 1 + 4 + payload;
+        ensureCapacity(2 + length + 4);
+
+        int start = active.position();
+        active.putShort((short) length);
+        active.put((byte) status);
+        active.putInt(tx == null ? -1 : tx.getRowIndex());
+        if(amount != null) {
+            active.put(Numeric.hexStringToByteArray(tx.getTo()));
+            active.putShort((short) amount.length);
+            active.put(amount);
+        } else if(tx != null && tx.getStatus() == TransactionStatus.CONFIRMED) {
+            active.put(Numeric.hexStringToByteArray(tx.getHash()));
+            active.putLong(tx.getGasUsed().longValueExact());
+        } else if(error != null) {
+            if(tx.getHash() != null) {
+                active.put((byte) 1);
+                active.put(Numeric.hexStringToByteArray(tx.getHash()));
+            } else {
+                active.put((byte) 0);
+            }
+            active.putShort((short) error.length);
+            active.put(error);
+        }
+
+        crc.reset();
+        crc.update(active.array(), start + 2, length);
+        active.putInt((int) crc.getValue());
+    }
+
+    private static byte[] errorBytes(String errorMsg) {
+        byte[] bytes = (errorMsg == null ? "" : errorMsg).getBytes(StandardCharsets.UTF_8);
+        if(bytes.length <= MAX_ERROR_BYTES) {
+            return bytes;
+        }
+        byte[] truncated = new byte[MAX_ERROR_BYTES];
+        System.arraycopy(bytes, 0, truncated, 0, MAX_ERROR_BYTES);
+        return truncated;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if(active.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(active.capacity() * 2, active.position() + bytes));
+            active.flip();
+            bigger.put(active);
+            active = bigger;
+        }
+    }
+
+    /**
+     * Writes everything appended so far and forces it to disk. Called by the flusher thread; callers
+     * that need a durable point (shutdown, report generation) may call it directly.
+     */
+    public void commit() {
+        synchronized (channel) {
+            ByteBuffer batch;
+            synchronized (lock) {
+                if(active.position() == 0) {
+                    return;
+                }
+                batch = active;
+                active = flushing;
+                flushing = batch;
+            }
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                log.error("", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        commit();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("", e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ru.rb.eth.metrics;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gas and fees of mined transactions: the gas used of every receipt times the gas price of the transaction
+ * that was mined, which for the legacy transactions signed here is the effective price. Fees are summed in
+ * whole gwei and the wei below a gwei in separate {@link LongAdder}s, so receipt callbacks never wait for each
+ * other and the total doesn't overflow a long.
+ */
+public class CostAccount {
+
+    private static final long WEI_PER_GWEI = 1_000_000_000L;
+
+    private final LongAdder gas = new LongAdder();
+    private final LongAdder gwei = new LongAdder();
+    private final LongAdder wei = new LongAdder();
+
+    public void record(long gasUsed, BigInteger gasPrice) {
+        long price = gasPrice.longValueExact();
+        long fraction = gasUsed * (price % WEI_PER_GWEI);
+        gas.add(gasUsed);
+        gwei.add(gasUsed * (price / WEI_PER_GWEI) + fraction / WEI_PER_GWEI);
+        wei.add(fraction % WEI_PER_GWEI);
+    }
+
+    public long getGas() {
+        return gas.sum();
+    }
+
+    public BigInteger getWei() {
+        return BigInteger.valueOf(gwei.sum()).multiply(BigInteger.valueOf(WEI_PER_GWEI)).add(BigInteger.valueOf(wei.sum()));
+    }
+
+    public BigDecimal getEth() {
+        return new BigDecimal(getWei()).movePointLeft(18);
+    }
+}
@@ -0,0 +1,82 @@
+package ru.rb.eth.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram. Recording is one bucket search and two striped adds, so it can be
+ * called from every callback thread without contention.
+ */
+public class LatencyHistogram {
+
+    private static final double[] BOUNDS_SECONDS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5,
+            1, 2.5, 5, 10, 15, 30, 60, 120, 300, 600, 1800
+    };
+
+    private final long[] boundsNanos = new long[BOUNDS_SECONDS.length];
+    private final LongAdder[] counts = new LongAdder[BOUNDS_SECONDS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+            boundsNanos[i] = (long) (BOUNDS_SECONDS[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        if(nanos < 0) {
+            return;
+        }
+        int bucket = 0;
+        while (bucket < boundsNanos.length && nanos > boundsNanos[bucket]) {
+            bucket++;
+        }
+        counts[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder adder : counts) {
+            count += adder.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given quantile, in milliseconds; 0 when nothing was recorded.
+     */
+    public double getQuantileMillis(double quantile) {
+        long count = getCount();
+        if(count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+            seen += counts[i].sum();
+            if(seen >= rank) {
+                return BOUNDS_SECONDS[i] * 1000;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    void writePrometheus(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+            cumulative += counts[i].sum();
+            out.append(name).append("_bucket{le=\"").append(BOUNDS_SECONDS[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += counts[BOUNDS_SECONDS.length].sum();
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum ").append(sumNanos.sum() / 1e9).append('\n');
+        out.append(name).append("_count ").append(cumulative).append('\n');
+    }
+}
@@ -0,0 +1,260 @@
+package ru.rb.eth.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Counters, gauges and stage latencies of the send pipeline: taken from the source to signed, waiting
+ * for the scheduler, broadcast until the node accepts the hash, then until the receipt. Readable over
+ * JMX as {@code ru.rb.eth:type=Metrics} and in Prometheus text format from {@link #toPrometheus()}.
+ */
+public class Metrics implements MetricsMBean {
+
+    private final LatencyHistogram signLatency = new LatencyHistogram();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram broadcastLatency = new LatencyHistogram();
+    private final LatencyHistogram confirmLatency = new LatencyHistogram();
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private final Map<String, LongAdder> rpcCalls = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> rpcErrors = new ConcurrentHashMap<>();
+
+    private IntSupplier inFlight = () -> 0;
+    private IntSupplier pendingReceipts = () -> 0;
+    private DoubleSupplier sendRate = () -> 0;
+    private Supplier<BigInteger> gasPrice = () -> BigInteger.ZERO;
+    private CostAccount cost = new CostAccount();
+    private DoubleSupplier ethPrice = () -> Double.NaN;
+    private Supplier<String> nodes = () -> "";
+
+    public void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("ru.rb.eth:type=Metrics"));
+    }
+
+    public LatencyHistogram getSignLatency() {
+        return signLatency;
+    }
+
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    public LatencyHistogram getBroadcastLatency() {
+        return broadcastLatency;
+    }
+
+    public LatencyHistogram getConfirmLatency() {
+        return confirmLatency;
+    }
+
+    public LatencyHistogram getTotalLatency() {
+        return totalLatency;
+    }
+
+    public void onSent() {
+        sent.increment();
+    }
+
+    public void onConfirmed(int rows) {
+        confirmed.add(rows);
+    }
+
+    public void onFailed(int rows) {
+        failed.add(rows);
+    }
+
+    public void onRpc(String method, boolean error) {
+        rpcCalls.computeIfAbsent(method, m -> new LongAdder()).increment();
+        if(error) {
+            rpcErrors.computeIfAbsent(method, m -> new LongAdder()).increment();
+        }
+    }
+
+    public void setInFlight(IntSupplier inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    public void setPendingReceipts(IntSupplier pendingReceipts) {
+        this.pendingReceipts = pendingReceipts;
+    }
+
+    public void setSendRate(DoubleSupplier sendRate) {
+        this.sendRate = sendRate;
+    }
+
+    public void setGasPrice(Supplier<BigInteger> gasPrice) {
+        this.gasPrice = gasPrice;
+    }
+
+    public void setCost(CostAccount cost) {
+        this.cost = cost;
+    }
+
+    public void setEthPrice(DoubleSupplier ethPrice) {
+        this.ethPrice = ethPrice;
+    }
+
+    public void setNodes(Supplier<String> nodes) {
+        this.nodes = nodes;
+    }
+
+    @Override
+    public long getSent() {
+        return sent.sum();
+    }
+
+    @Override
+    public long getConfirmed() {
+        return confirmed.sum();
+    }
+
+    @Override
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.getAsInt();
+    }
+
+    @Override
+    public int getPendingReceipts() {
+        return pendingReceipts.getAsInt();
+    }
+
+    @Override
+    public double getSendRate() {
+        return sendRate.getAsDouble();
+    }
+
+    @Override
+    public double getGasPriceGwei() {
+        return new BigDecimal(gasPrice.get()).movePointLeft(9).doubleValue();
+    }
+
+    @Override
+    public long getGasUsed() {
+        return cost.getGas();
+    }
+
+    @Override
+    public double getCostEth() {
+        return cost.getEth().doubleValue();
+    }
+
+    /**
+     * @return NaN while the ETH price is unknown
+     */
+    @Override
+    public double getCostUsd() {
+        return getCostEth() * getEthPriceUsd();
+    }
+
+    @Override
+    public double getEthPriceUsd() {
+        return ethPrice.getAsDouble();
+    }
+
+    @Override
+    public double getSignLatencyP99Millis() {
+        return signLatency.getQuantileMillis(0.99);
+    }
+
+    @Override
+    public double getBroadcastLatencyP50Millis() {
+        return broadcastLatency.getQuantileMillis(0.5);
+    }
+
+    @Override
+    public double getBroadcastLatencyP99Millis() {
+        return broadcastLatency.getQuantileMillis(0.99);
+    }
+
+    @Override
+    public double getConfirmLatencyP50Millis() {
+        return confirmLatency.getQuantileMillis(0.5);
+    }
+
+    @Override
+    public double getConfirmLatencyP99Millis() {
+        return confirmLatency.getQuantileMillis(0.99);
+    }
+
+    @Override
+    public String getRpcErrors() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(rpcCalls).entrySet()) {
+            LongAdder errors = rpcErrors.get(entry.getKey());
+            if(out.length() > 0) {
+                out.append(", ");
+            }
+            out.append(entry.getKey()).append(' ').append(errors == null ? 0 : errors.sum()).append('/').append(entry.getValue().sum());
+        }
+        return out.toString();
+    }
+
+    @Override
+    public String getNodes() {
+        return nodes.get();
+    }
+
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        counter(out, "ethsender_transactions_sent_total", "Transactions handed to the node", getSent());
+        counter(out, "ethsender_rows_confirmed_total", "Sheet rows confirmed", getConfirmed());
+        counter(out, "ethsender_rows_failed_total", "Sheet rows failed", getFailed());
+        gauge(out, "ethsender_in_flight", "Transactions sent but not settled", getInFlight());
+        gauge(out, "ethsender_pending_receipts", "Hashes waiting for a receipt", getPendingReceipts());
+        gauge(out, "ethsender_send_rate", "Current send rate of all lanes in transactions per second", getSendRate());
+        gauge(out, "ethsender_gas_price_gwei", "Gas price for new transactions", getGasPriceGwei());
+        counter(out, "ethsender_gas_used_total", "Gas used by mined transactions", getGasUsed());
+        gauge(out, "ethsender_cost_eth", "Fees of mined transactions in ETH", getCostEth());
+        if(!Double.isNaN(getEthPriceUsd())) {
+            gauge(out, "ethsender_cost_usd", "Fees of mined transactions in USD at the current ETH price", getCostUsd());
+            gauge(out, "ethsender_eth_price_usd", "ETH price used for the USD cost", getEthPriceUsd());
+        }
+
+        out.append("# HELP ethsender_rpc_calls_total JSON-RPC calls by method\n# TYPE ethsender_rpc_calls_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(rpcCalls).entrySet()) {
+            out.append("ethsender_rpc_calls_total{method=\"").append(entry.getKey()).append("\"} ").append(entry.getValue().sum()).append('\n');
+        }
+        out.append("# HELP ethsender_rpc_errors_total Failed JSON-RPC calls by method\n# TYPE ethsender_rpc_errors_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(rpcErrors).entrySet()) {
+            out.append("ethsender_rpc_errors_total{method=\"").append(entry.getKey()).append("\"} ").append(entry.getValue().sum()).append('\n');
+        }
+
+        signLatency.writePrometheus(out, "ethsender_sign_seconds", "From taking a row to a signed transaction");
+        queueLatency.writePrometheus(out, "ethsender_queue_seconds", "From signed to handed to the broadcaster");
+        broadcastLatency.writePrometheus(out, "ethsender_broadcast_seconds", "From broadcast to the node accepting the hash");
+        confirmLatency.writePrometheus(out, "ethsender_confirm_seconds", "From accepted hash to receipt");
+        totalLatency.writePrometheus(out, "ethsender_total_seconds", "From taking a row to receipt");
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+}
@@ -0,0 +1,40 @@
+package ru.rb.eth.metrics;
+
+public interface MetricsMBean {
+
+    long getSent();
+
+    long getConfirmed();
+
+    long getFailed();
+
+    int getInFlight();
+
+    int getPendingReceipts();
+
+    double getSendRate();
+
+    double getGasPriceGwei();
+
+    long getGasUsed();
+
+    double getCostEth();
+
+    double getCostUsd();
+
+    double getEthPriceUsd();
+
+    double getSignLatencyP99Millis();
+
+    double getBroadcastLatencyP50Millis();
+
+    double getBroadcastLatencyP99Millis();
+
+    double getConfirmLatencyP50Millis();
+
+    double getConfirmLatencyP99Millis();
+
+    String getRpcErrors();
+
+    String getNodes();
+}
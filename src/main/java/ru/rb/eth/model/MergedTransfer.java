@@ -0,0 +1,22 @@
+package ru.rb.eth.model;
+
+import java.util.List;
+
+/**
+ * Rows with the same recipient paid by one transfer of their summed amount. Statuses, hash and gas
+ * are reported for each source row.
+ */
+public class MergedTransfer extends Transaction {
+
+    private final List<Transaction> rows;
+
+    public MergedTransfer(String to, String amount, List<Transaction> rows) {
+        super(-1, to, amount);
+        this.rows = rows;
+    }
+
+    @Override
+    public List<Transaction> getRows() {
+        return rows;
+    }
+}
@@ -2,6 +2,8 @@ package ru.rb.eth.model;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
 
 public class Transaction {
 
@@ -16,6 +18,16 @@ public class Transaction {
     private BigInteger gasUsed;
     private String hash;
 
+    private BigInteger nonce;
+    private BigInteger gasPrice;
+    private BigInteger gasLimit;
+    private String signedTx;
+
+    private long dequeuedAt;
+    private long signedAt;
+    private long sentAt;
+    private long acceptedAt;
+
     public Transaction(int rowIndex, String to, String amount) {
         this.rowIndex = rowIndex;
         this.to = to;
@@ -40,6 +52,48 @@ public class Transaction {
         this.gasUsed = gasUsed;
     }
 
+    public void setNonce(BigInteger nonce) {
+        this.nonce = nonce;
+    }
+
+    public void setGasPrice(BigInteger gasPrice) {
+        this.gasPrice = gasPrice;
+    }
+
+    public void setGasLimit(BigInteger gasLimit) {
+        this.gasLimit = gasLimit;
+    }
+
+    public void setSignedTx(String signedTx) {
+        this.signedTx = signedTx;
+    }
+
+    /**
+     * Marks when the transaction was taken from the source for signing, in {@link System#nanoTime()} units.
+     */
+    public void setDequeuedAt(long dequeuedAt) {
+        this.dequeuedAt = dequeuedAt;
+    }
+
+    public void setSignedAt(long signedAt) {
+        this.signedAt = signedAt;
+    }
+
+    public void setSentAt(long sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public void setAcceptedAt(long acceptedAt) {
+        this.acceptedAt = acceptedAt;
+    }
+
+    /**
+     * Sheet rows settled by this transaction.
+     */
+    public List<Transaction> getRows() {
+        return Collections.singletonList(this);
+    }
+
     public int getRowIndex() {
         return rowIndex;
     }
@@ -71,4 +125,39 @@ public class Transaction {
     public BigInteger getGasUsed() {
         return gasUsed;
     }
+
+    public BigInteger getNonce() {
+        return nonce;
+    }
+
+    public BigInteger getGasPrice() {
+        return gasPrice;
+    }
+
+    /**
+     * @return the estimated gas limit, or null to use the builder's default
+     */
+    public BigInteger getGasLimit() {
+        return gasLimit;
+    }
+
+    public String getSignedTx() {
+        return signedTx;
+    }
+
+    public long getDequeuedAt() {
+        return dequeuedAt;
+    }
+
+    public long getSignedAt() {
+        return signedAt;
+    }
+
+    public long getSentAt() {
+        return sentAt;
+    }
+
+    public long getAcceptedAt() {
+        return acceptedAt;
+    }
 }
@@ -0,0 +1,59 @@
+package ru.rb.eth.model;
+
+import java.util.Queue;
+
+public interface TransactionSource {
+
+    Transaction poll();
+
+    boolean isExhausted();
+
+    /**
+     * Number of sheet rows, which may be more than the number of transactions when rows are merged.
+     */
+    int getTotalCount();
+
+    /**
+     * Number of transactions to send, fewer than {@link #getTotalCount} when rows are merged.
+     */
+    default int getTransactionCount() {
+        return getTotalCount();
+    }
+
+    /**
+     * Thread-safe view of a queue that is fully loaded before sending starts.
+     */
+    static TransactionSource of(Queue<Transaction> transactions) {
+        int rowCount = 0;
+        for (Transaction transaction : transactions) {
+            rowCount += transaction.getRows().size();
+        }
+        int totalCount = rowCount;
+        int transactionCount = transactions.size();
+        return new TransactionSource() {
+            @Override
+            public Transaction poll() {
+                synchronized (transactions) {
+                    return transactions.poll();
+                }
+            }
+
+            @Override
+            public boolean isExhausted() {
+                synchronized (transactions) {
+                    return transactions.isEmpty();
+                }
+            }
+
+            @Override
+            public int getTotalCount() {
+                return totalCount;
+            }
+
+            @Override
+            public int getTransactionCount() {
+                return transactionCount;
+            }
+        };
+    }
+}
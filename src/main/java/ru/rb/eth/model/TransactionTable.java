@@ -0,0 +1,477 @@
+package ru.rb.eth.model;
+
+import org.web3j.utils.Numeric;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rows of a table kept in columns instead of one {@link Transaction} per row: packed 20-byte addresses,
+ * amounts scaled by 10^18 as 32-byte big-endian words and int status codes, in pages of
+ * {@code PAGE_SIZE} rows addressed by sheet row index. Hashes and gas used are stored in columns
+ * allocated with the first settled row of a page, error messages in a map. A {@link Transaction} is
+ * built only when a row is read; it carries the lowercase address and the amount without trailing zeros.
+ *
+ * <p>Every access to a row holds the lock of its page, so rows may be read and updated from any thread.
+ */
+public class TransactionTable implements Iterable<Transaction> {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int ADDRESS_BYTES = 20;
+    private static final int AMOUNT_BYTES = 32;
+    private static final int HASH_BYTES = 32;
+    private static final int DECIMALS = 18;
+
+    private static final int EMPTY = 0;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private volatile Page[] pages = new Page[0];
+    private final Map<Integer, String> errors = new ConcurrentHashMap<>();
+
+    private volatile int lastRow = -1;
+    private final AtomicInteger rowCount = new AtomicInteger();
+
+    /**
+     * Adds a parsed row.
+     *
+     * @throws ArithmeticException if the amount has more than 18 fraction digits or doesn't fit in uint256
+     */
+    public void add(int rowIndex, String to, String amount) {
+        add(rowIndex, Numeric.hexStringToByteArray(to), amount);
+    }
+
+    public void add(int rowIndex, byte[] address, String amount) {
+        if(rowIndex < 0) {
+            throw new IllegalArgumentException("Invalid row index: " + rowIndex);
+        }
+        if(address.length != ADDRESS_BYTES) {
+            throw new IllegalArgumentException("Invalid address in row " + rowIndex);
+        }
+        BigInteger value = new BigDecimal(amount).movePointRight(DECIMALS).toBigIntegerExact();
+        if(value.signum() < 0 || value.bitLength() > AMOUNT_BYTES * 8) {
+            throw new ArithmeticException("Amount out of uint256 range: " + amount);
+        }
+        byte[] word = value.toByteArray();
+        int length = Math.min(word.length, AMOUNT_BYTES);
+
+        Page page = grow(rowIndex);
+        int offset = rowIndex & (PAGE_SIZE - 1);
+        synchronized (page) {
+            if(page.statuses[offset] == EMPTY) {
+                rowCount.incrementAndGet();
+            }
+            System.arraycopy(address, 0, page.addresses, offset * ADDRESS_BYTES, ADDRESS_BYTES);
+            int amountOffset = offset * AMOUNT_BYTES;
+            Arrays.fill(page.amounts, amountOffset, amountOffset + AMOUNT_BYTES - length, (byte) 0);
+            System.arraycopy(word, word.length - length, page.amounts, amountOffset + AMOUNT_BYTES - length, length);
+            page.statuses[offset] = TransactionStatus.PARSED;
+        }
+        errors.remove(rowIndex);
+    }
+
+    public void setStatus(int rowIndex, int status) {
+        Page page = page(rowIndex);
+        if(page == null) {
+            return;
+        }
+        int offset = rowIndex & (PAGE_SIZE - 1);
+        synchronized (page) {
+            if(page.statuses[offset] != EMPTY) {
+                page.statuses[offset] = status;
+            }
+        }
+    }
+
+    public void setConfirmed(int rowIndex, byte[] hash, long gasUsed) {
+        Page page = page(rowIndex);
+        if(page == null) {
+            return;
+        }
+        int offset = rowIndex & (PAGE_SIZE - 1);
+        synchronized (page) {
+            if(page.statuses[offset] == EMPTY) {
+                return;
+            }
+            page.setHash(offset, hash);
+            page.gasUsed()[offset] = gasUsed;
+            page.statuses[offset] = TransactionStatus.CONFIRMED;
+        }
+    }
+
+    /**
+     * @param hash hash of the failed transaction, or null when it never got one
+     */
+    public void setError(int rowIndex, byte[] hash, String errorMsg) {
+        Page page = page(rowIndex);
+        if(page == null) {
+            return;
+        }
+        int offset = rowIndex & (PAGE_SIZE - 1);
+        synchronized (page) {
+            if(page.statuses[offset] == EMPTY) {
+                return;
+            }
+            page.setHash(offset, hash);
+            page.statuses[offset] = TransactionStatus.ERROR;
+            if(errorMsg != null) {
+                errors.put(rowIndex, errorMsg);
+            }
+        }
+    }
+
+    /**
+     * @return the row as a new transaction, or null if the table has no such row
+     */
+    public Transaction get(int rowIndex) {
+        Page page = page(rowIndex);
+        if(page == null) {
+            return null;
+        }
+        synchronized (page) {
+            return page.get(rowIndex);
+        }
+    }
+
+    public boolean contains(int rowIndex) {
+        Page page = page(rowIndex);
+        if(page == null) {
+            return false;
+        }
+        synchronized (page) {
+            return page.statuses[rowIndex & (PAGE_SIZE - 1)] != EMPTY;
+        }
+    }
+
+    /**
+     * Copy of the rows as they are now, e.g. to write a report while they keep changing. Every page is
+     * copied under its lock, so the copy is consistent within a page.
+     */
+    public TransactionTable copy() {
+        TransactionTable copy = new TransactionTable();
+        copy.lastRow = lastRow;
+        Page[] current = pages;
+        Page[] copied = new Page[current.length];
+        int count = 0;
+        for (int i = 0; i < current.length; i++) {
+            if(current[i] == null) {
+                continue;
+            }
+            copied[i] = copy.new Page();
+            synchronized (current[i]) {
+                count += current[i].copyTo(copied[i]);
+            }
+        }
+        copy.pages = copied;
+        copy.rowCount.set(count);
+        copy.errors.putAll(errors);
+        return copy;
+    }
+
+    /**
+     * Sum of the amounts of rows with the given status, in units of 10^-18.
+     */
+    public BigInteger getTotalAmount(int status) {
+        BigInteger total = BigInteger.ZERO;
+        for (Page page : pages) {
+            if(page == null) {
+                continue;
+            }
+            synchronized (page) {
+                for (int offset = 0; offset < PAGE_SIZE; offset++) {
+                    if(page.statuses[offset] == status) {
+                        total = total.add(page.amount(offset));
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    public int countByStatus(int status) {
+        int count = 0;
+        for (Page page : pages) {
+            if(page == null) {
+                continue;
+            }
+            synchronized (page) {
+                for (int offset = 0; offset < PAGE_SIZE; offset++) {
+                    if(page.statuses[offset] == status) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    public int getRowCount() {
+        return rowCount.get();
+    }
+
+    /**
+     * Bytes held by the columns, error messages counted by their length.
+     */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (Page page : pages) {
+            if(page == null) {
+                continue;
+            }
+            synchronized (page) {
+                bytes += page.addresses.length + page.amounts.length + page.statuses.length * 4L;
+                bytes += page.hashes == null ? 0 : page.hashes.length;
+                bytes += page.gasUsed == null ? 0 : page.gasUsed.length * 8L;
+            }
+        }
+        for (String error : errors.values()) {
+            bytes += 64 + error.length() * 2L;
+        }
+        return bytes;
+    }
+
+    /**
+     * Rows with the given status in row order, e.g. to merge them.
+     */
+    public ArrayDeque<Transaction> toDeque(int status) {
+        ArrayDeque<Transaction> transactions = new ArrayDeque<>();
+        for (Transaction transaction : this) {
+            if(transaction.getStatus() == status) {
+                transactions.add(transaction);
+            }
+        }
+        return transactions;
+    }
+
+    /**
+     * Hands out the rows that are {@link TransactionStatus#PARSED} now, in row order. Safe for concurrent polling.
+     */
+    public TransactionSource source() {
+        int totalCount = countByStatus(TransactionStatus.PARSED);
+        int last = lastRow;
+        AtomicInteger cursor = new AtomicInteger();
+        return new TransactionSource() {
+            @Override
+            public Transaction poll() {
+                while (cursor.get() <= last) {
+                    int rowIndex = cursor.getAndIncrement();
+                    if(rowIndex > last) {
+                        break;
+                    }
+                    Page page = page(rowIndex);
+                    if(page == null) {
+                        continue;
+                    }
+                    synchronized (page) {
+                        if(page.statuses[rowIndex & (PAGE_SIZE - 1)] == TransactionStatus.PARSED) {
+                            return page.get(rowIndex);
+                        }
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean isExhausted() {
+                return cursor.get() > last;
+            }
+
+            @Override
+            public int getTotalCount() {
+                return totalCount;
+            }
+        };
+    }
+
+    /**
+     * Builds a new transaction for every row in row order.
+     */
+    @Override
+    public Iterator<Transaction> iterator() {
+        int last = lastRow;
+        return new Iterator<Transaction>() {
+
+            private int rowIndex = -1;
+            private Transaction next = advance();
+
+            private Transaction advance() {
+                while (++rowIndex <= last) {
+                    Transaction transaction = get(rowIndex);
+                    if(transaction != null) {
+                        return transaction;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Transaction next() {
+                if(next == null) {
+                    throw new NoSuchElementException();
+                }
+                Transaction transaction = next;
+                next = advance();
+                return transaction;
+            }
+        };
+    }
+
+    private Page page(int rowIndex) {
+        Page[] current = pages;
+        int index = rowIndex >>> PAGE_BITS;
+        return rowIndex < 0 || index >= current.length ? null : current[index];
+    }
+
+    private synchronized Page grow(int rowIndex) {
+        int index = rowIndex >>> PAGE_BITS;
+        Page[] current = pages;
+        if(index >= current.length) {
+            current = Arrays.copyOf(current, index + 1);
+        }
+        if(current[index] == null) {
+            current[index] = new Page();
+        }
+        pages = current;
+        if(rowIndex > lastRow) {
+            lastRow = rowIndex;
+        }
+        return current[index];
+    }
+
+    private class Page {
+
+        private final byte[] addresses = new byte[PAGE_SIZE * ADDRESS_BYTES];
+        private final byte[] amounts = new byte[PAGE_SIZE * AMOUNT_BYTES];
+        private final int[] statuses = new int[PAGE_SIZE];
+
+        private byte[] hashes;
+        private long[] gasUsed;
+
+        private void setHash(int offset, byte[] hash) {
+            if(hash == null) {
+                if(hashes != null) {
+                    Arrays.fill(hashes, offset * HASH_BYTES, (offset + 1) * HASH_BYTES, (byte) 0);
+                }
+                return;
+            }
+            if(hashes == null) {
+                hashes = new byte[PAGE_SIZE * HASH_BYTES];
+            }
+            System.arraycopy(hash, 0, hashes, offset * HASH_BYTES, HASH_BYTES);
+        }
+
+        /**
+         * @return number of rows copied
+         */
+        private int copyTo(Page page) {
+            System.arraycopy(addresses, 0, page.addresses, 0, addresses.length);
+            System.arraycopy(amounts, 0, page.amounts, 0, amounts.length);
+            System.arraycopy(statuses, 0, page.statuses, 0, statuses.length);
+            page.hashes = hashes == null ? null : hashes.clone();
+            page.gasUsed = gasUsed == null ? null : gasUsed.clone();
+            int count = 0;
+            for (int status : statuses) {
+                if(status != EMPTY) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private long[] gasUsed() {
+            if(gasUsed == null) {
+                gasUsed = new long[PAGE_SIZE];
+            }
+            return gasUsed;
+        }
+
+        private BigInteger amount(int offset) {
+            return new BigInteger(1, Arrays.copyOfRange(amounts, offset * AMOUNT_BYTES, (offset + 1) * AMOUNT_BYTES));
+        }
+
+        private Transaction get(int rowIndex) {
+            int offset = rowIndex & (PAGE_SIZE - 1);
+            int status = statuses[offset];
+            if(status == EMPTY) {
+                return null;
+            }
+            String to = toHex(addresses, offset * ADDRESS_BYTES, ADDRESS_BYTES);
+            String amount = toDecimal(amount(offset));
+            Transaction transaction = new Transaction(rowIndex, to, amount);
+            if(hashes != null && !isZero(hashes, offset * HASH_BYTES, HASH_BYTES)) {
+                transaction.setHash(toHex(hashes, offset * HASH_BYTES, HASH_BYTES));
+            }
+            if(status == TransactionStatus.CONFIRMED) {
+                transaction.setGasUsed(BigInteger.valueOf(gasUsed[offset]));
+            }
+            if(status == TransactionStatus.ERROR) {
+                transaction.setErrorMsg(errors.get(rowIndex));
+            } else {
+                transaction.updateStatus(status);
+            }
+            return transaction;
+        }
+    }
+
+    /**
+     * Same as {@code new BigDecimal(value, DECIMALS).stripTrailingZeros().toPlainString()} without dividing.
+     */
+    private static String toDecimal(BigInteger value) {
+        if(value.signum() == 0) {
+            return "0";
+        }
+        String digits = value.toString();
+        int point = digits.length() - DECIMALS;
+        int end = digits.length();
+        while (end > point && digits.charAt(end - 1) == '0') {
+            end--;
+        }
+        if(end <= point) {
+            return digits.substring(0, point);
+        }
+        StringBuilder amount = new StringBuilder(DECIMALS + 2);
+        if(point <= 0) {
+            amount.append("0.");
+            for (int i = point; i < 0; i++) {
+                amount.append('0');
+            }
+            amount.append(digits, 0, end);
+        } else {
+            amount.append(digits, 0, point).append('.').append(digits, point, end);
+        }
+        return amount.toString();
+    }
+
+    private static String toHex(byte[] bytes, int offset, int length) {
+        char[] hex = new char[2 + length * 2];
+        hex[0] = '0';
+        hex[1] = 'x';
+        for (int i = 0; i < length; i++) {
+            int b = bytes[offset + i] & 0xff;
+            hex[2 + i * 2] = HEX[b >>> 4];
+            hex[3 + i * 2] = HEX[b & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static boolean isZero(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if(bytes[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.rb.eth.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Several transfers paid by one on-chain transaction. The batch carries the nonce, signed payload and hash;
+ * statuses are reported for each row.
+ */
+public class TransferBatch extends Transaction {
+
+    private final List<Transaction> transfers;
+
+    public TransferBatch(List<Transaction> transfers) {
+        super(-1, null, null);
+        this.transfers = transfers;
+    }
+
+    /**
+     * One entry per recipient; an entry may itself be a {@link MergedTransfer} of several rows.
+     */
+    public List<Transaction> getTransfers() {
+        return transfers;
+    }
+
+    @Override
+    public List<Transaction> getRows() {
+        List<Transaction> rows = new ArrayList<>(transfers.size());
+        for (Transaction transfer : transfers) {
+            rows.addAll(transfer.getRows());
+        }
+        return rows;
+    }
+
+    public int size() {
+        return transfers.size();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.rb.eth.price;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Last price of a {@link PriceProvider}, fetched at start and again every time it is {@code ttlMillis} old
+ * on a background thread, so readers never wait for the provider. A failed fetch keeps the previous price.
+ */
+public class CachedPrice {
+
+    private final PriceProvider provider;
+    private final long ttlMillis;
+    private final ScheduledExecutorService executor;
+
+    private volatile double price = Double.NaN;
+    private volatile long fetchedAt;
+
+    private Logger log;
+
+    public CachedPrice(PriceProvider provider, long ttlMillis) {
+        log = LoggerFactory.getLogger(CachedPrice.class);
+
+        this.provider = provider;
+        this.ttlMillis = ttlMillis;
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "price-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::refresh, 0, ttlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the last price, or NaN until one was fetched
+     */
+    public double get() {
+        return price;
+    }
+
+    /**
+     * @return milliseconds since the price was fetched, or -1 if it never was
+     */
+    public long getAgeMillis() {
+        return Double.isNaN(price) ? -1 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fetchedAt);
+    }
+
+    private void refresh() {
+        try {
+            double fetched = provider.getPrice();
+            if(!(fetched > 0)) {
+                throw new IllegalStateException("Invalid price " + fetched);
+            }
+            fetchedAt = System.nanoTime();
+            price = fetched;
+        } catch (Exception e) {
+            log.warn("Can't get the ETH price: " + e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ru.rb.eth.price;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads the price from a text file holding just the number, e.g. for offline runs. The file is read again on
+ * every refresh, so it can be changed while a run is in progress.
+ */
+public class FilePriceProvider implements PriceProvider {
+
+    private final Path path;
+
+    public FilePriceProvider(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public double getPrice() throws IOException {
+        String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim();
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("No price in " + path + ": " + text);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ru.rb.eth.price;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Source of the ETH price in USD. Calls may block; {@link CachedPrice} keeps them off the send path.
+ */
+public interface PriceProvider {
+
+    double getPrice() throws IOException;
+
+    /**
+     * @param source a ticker URL, a number to use as a fixed price, or a path to a file with the price
+     */
+    static PriceProvider of(String source) {
+        if(source.startsWith("http://") || source.startsWith("https://")) {
+            return new TickerPriceProvider(source);
+        }
+        try {
+            double price = Double.parseDouble(source);
+            return () -> price;
+        } catch (NumberFormatException e) {
+            return new FilePriceProvider(Paths.get(source));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.rb.eth.price;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads {@code price_usd} from a ticker in the format of the CoinMarketCap v1 API: an object or an array whose
+ * first element holds it.
+ */
+public class TickerPriceProvider implements PriceProvider {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final String url;
+    private final OkHttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public TickerPriceProvider(String url) {
+        this.url = url;
+        client = new OkHttpClient.Builder()
+                .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public double getPrice() throws IOException {
+        Request request = new Request.Builder().url(url).build();
+        try (Response response = client.newCall(request).execute()) {
+            if(!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Ticker " + url + " answered " + response.code());
+            }
+            JsonNode ticker = objectMapper.readTree(response.body().string());
+            JsonNode price = (ticker.isArray() ? ticker.path(0) : ticker).get("price_usd");
+            if(price == null) {
+                throw new IOException("No price_usd in the answer of " + url);
+            }
+            return price.asDouble();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.rb.eth.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One element of a JSON-RPC batch. Completes with the whole response element, which holds either
+ * {@code result} or {@code error}.
+ */
+public class BatchCall {
+
+    private final String method;
+    private final List<Object> params;
+    private final CompletableFuture<JsonNode> response = new CompletableFuture<>();
+
+    public BatchCall(String method, Object... params) {
+        this.method = method;
+        this.params = Arrays.asList(params);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public List<Object> getParams() {
+        return params;
+    }
+
+    public CompletableFuture<JsonNode> getResponse() {
+        return response;
+    }
+}
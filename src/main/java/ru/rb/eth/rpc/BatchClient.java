@@ -0,0 +1,11 @@
+package ru.rb.eth.rpc;
+
+import java.util.List;
+
+/**
+ * Something that can deliver a list of JSON-RPC calls as one batch and complete every call with its response.
+ */
+public interface BatchClient {
+
+    void send(List<BatchCall> calls);
+}
@@ -0,0 +1,113 @@
+package ru.rb.eth.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.web3j.protocol.ObjectMapperFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends several JSON-RPC calls in one HTTP request and routes every element of the response array
+ * back to its call by id.
+ */
+public class BatchRpcClient implements BatchClient {
+
+    private static final MediaType JSON_MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
+
+    private final String url;
+    private final OkHttpClient client;
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+    private final AtomicLong nextId = new AtomicLong();
+
+    public BatchRpcClient(String url) {
+        this(url, new OkHttpClient());
+    }
+
+    public BatchRpcClient(String url, OkHttpClient client) {
+        this.url = url;
+        this.client = client;
+    }
+
+    @Override
+    public void send(List<BatchCall> calls) {
+        if(calls.isEmpty()) {
+            return;
+        }
+
+        Map<Long, BatchCall> byId = new HashMap<>();
+        ArrayNode body = objectMapper.createArrayNode();
+        for (BatchCall call : calls) {
+            long id = nextId.incrementAndGet();
+            byId.put(id, call);
+
+            ObjectNode request = body.addObject();
+            request.put("jsonrpc", "2.0");
+            request.put("method", call.getMethod());
+            request.set("params", objectMapper.valueToTree(call.getParams()));
+            request.put("id", id);
+        }
+
+        Request request;
+        try {
+            request = new Request.Builder()
+                    .url(url)
+                    .post(RequestBody.create(JSON_MEDIA_TYPE, objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            failAll(byId, e);
+            return;
+        }
+
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                failAll(byId, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody responseBody = response.body()) {
+                    if(!response.isSuccessful() || responseBody == null) {
+                        throw new IOException("Batch request failed with HTTP " + response.code());
+                    }
+                    complete(byId, objectMapper.readTree(responseBody.byteStream()));
+                } catch (IOException | RuntimeException e) {
+                    failAll(byId, e);
+                }
+            }
+        });
+    }
+
+    private void complete(Map<Long, BatchCall> byId, JsonNode responses) throws IOException {
+        if(!responses.isArray()) {
+            throw new IOException("Batch request rejected: " + responses);
+        }
+        for (JsonNode element : responses) {
+            BatchCall call = byId.remove(element.path("id").asLong());
+            if(call != null) {
+                call.getResponse().complete(element);
+            }
+        }
+        failAll(byId, new IOException("No response in batch"));
+    }
+
+    private static void failAll(Map<Long, BatchCall> byId, Throwable throwable) {
+        for (BatchCall call : byId.values()) {
+            call.getResponse().completeExceptionally(throwable);
+        }
+    }
+}
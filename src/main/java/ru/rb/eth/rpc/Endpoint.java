@@ -0,0 +1,125 @@
+package ru.rb.eth.rpc;
+
+import okhttp3.OkHttpClient;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.http.HttpService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One node of an {@link EndpointPool} with its measured latency, error rate and circuit state.
+ * After {@code FAILURE_THRESHOLD} failures in a row the circuit opens and the node gets no traffic
+ * until a health check succeeds; every failed check doubles the time until the next one.
+ * A {@code ws://} or {@code wss://} node is reached over one {@link WebSocketService}.
+ */
+class Endpoint {
+
+    private static final double EWMA_WEIGHT = 0.2;
+    private static final double ERROR_PENALTY = 10;
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long MIN_OPEN_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_OPEN_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final String url;
+    private final Web3jService service;
+    private final BatchClient batchClient;
+    private final WebSocketService webSocket;
+
+    private double latencyEwma;
+    private double errorRate;
+    private int consecutiveFailures;
+    private boolean open;
+    private long openUntil;
+    private long openNanos = MIN_OPEN_NANOS;
+    private long calls;
+    private long openings;
+
+    Endpoint(String url, OkHttpClient client) {
+        this.url = url;
+        if(WebSocketService.isWebSocket(url)) {
+            webSocket = new WebSocketService(url, client);
+            service = webSocket;
+            batchClient = webSocket;
+        } else {
+            webSocket = null;
+            service = new HttpService(url, client, false);
+            batchClient = new BatchRpcClient(url, client);
+        }
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    Web3jService getService() {
+        return service;
+    }
+
+    BatchClient getBatchClient() {
+        return batchClient;
+    }
+
+    /**
+     * @return the WebSocket connection, or null for an HTTP node
+     */
+    WebSocketService getWebSocket() {
+        return webSocket;
+    }
+
+    synchronized void onSuccess(long latencyNanos) {
+        calls++;
+        latencyEwma = latencyEwma == 0 ? latencyNanos : latencyEwma * (1 - EWMA_WEIGHT) + latencyNanos * EWMA_WEIGHT;
+        errorRate *= 1 - EWMA_WEIGHT;
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * @return true if this failure opened the circuit
+     */
+    synchronized boolean onFailure() {
+        calls++;
+        errorRate = errorRate * (1 - EWMA_WEIGHT) + EWMA_WEIGHT;
+        if(++consecutiveFailures < FAILURE_THRESHOLD || open) {
+            return false;
+        }
+        open = true;
+        openings++;
+        openUntil = System.nanoTime() + openNanos;
+        return true;
+    }
+
+    synchronized void onCheckPassed() {
+        open = false;
+        consecutiveFailures = 0;
+        openNanos = MIN_OPEN_NANOS;
+    }
+
+    synchronized void onCheckFailed() {
+        openNanos = Math.min(MAX_OPEN_NANOS, openNanos * 2);
+        openUntil = System.nanoTime() + openNanos;
+    }
+
+    synchronized boolean isOpen() {
+        return open;
+    }
+
+    synchronized boolean isCheckDue(long now) {
+        return open && now - openUntil >= 0;
+    }
+
+    synchronized long getOpenUntil() {
+        return openUntil;
+    }
+
+    /**
+     * Lower is better. Nodes without measurements score 0, so every node gets tried early.
+     */
+    synchronized double getScore() {
+        return latencyEwma * (1 + ERROR_PENALTY * errorRate);
+    }
+
+    synchronized String describe() {
+        return url + (open ? " (open)" : "") + String.format(" %.0f ms, %.0f%% errors, %d calls, opened %d times",
+                latencyEwma / 1e6, errorRate * 100, calls, openings);
+    }
+}
@@ -0,0 +1,280 @@
+package ru.rb.eth.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.utils.Async;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Spreads JSON-RPC traffic over several nodes. Every call goes to the better of two randomly picked
+ * nodes with a closed circuit, scored by latency and recent error rate; a small share of calls goes
+ * to a random node so that scores of idle nodes stay current. A call that fails on the
+ * transport level or is rate limited is retried on another node, and nodes with an open circuit are
+ * probed with {@code eth_blockNumber} until they answer again.
+ */
+public class EndpointPool implements Web3jService, BatchClient {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int LIMIT_EXCEEDED = -32005;
+    private static final long CHECK_MILLIS = 1000;
+    private static final double EXPLORE_SHARE = 0.05;
+    private static final int MAX_REQUESTS_PER_NODE = 32;
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final ScheduledExecutorService checker;
+
+    private RpcListener listener = (method, error) -> {};
+
+    private Logger log;
+
+    /**
+     * Uses a client that runs up to {@value #MAX_REQUESTS_PER_NODE} asynchronous calls per node at once, so
+     * receipt lookups don't wait behind broadcasts and balance reads.
+     */
+    public EndpointPool(List<String> urls) {
+        this(urls, new OkHttpClient.Builder().dispatcher(dispatcher()).build());
+    }
+
+    public EndpointPool(List<String> urls, OkHttpClient client) {
+        log = LoggerFactory.getLogger(EndpointPool.class);
+
+        if(urls.isEmpty()) {
+            throw new IllegalArgumentException("No node URL provided");
+        }
+        for (String url : urls) {
+            endpoints.add(new Endpoint(url, client));
+        }
+
+        checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "endpoint-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        checker.scheduleWithFixedDelay(this::check, CHECK_MILLIS, CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void setListener(RpcListener listener) {
+        this.listener = listener;
+    }
+
+    private static Dispatcher dispatcher() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS_PER_NODE * 4);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_NODE);
+        return dispatcher;
+    }
+
+    public int size() {
+        return endpoints.size();
+    }
+
+    public boolean hasWebSocket() {
+        for (Endpoint endpoint : endpoints) {
+            if(endpoint.getWebSocket() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Subscribes to new block heads on every WebSocket node. Heads of all nodes go to the same listener.
+     */
+    public void subscribeNewHeads(Consumer<BigInteger> listener) {
+        for (Endpoint endpoint : endpoints) {
+            if(endpoint.getWebSocket() != null) {
+                endpoint.getWebSocket().subscribeNewHeads(listener);
+            }
+        }
+    }
+
+    public String describe() {
+        List<String> states = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            states.add(endpoint.describe());
+        }
+        return String.join(" | ", states);
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        Set<Endpoint> tried = new HashSet<>();
+        IOException failure = null;
+        while (tried.size() < maxAttempts()) {
+            Endpoint endpoint = choose(tried);
+            tried.add(endpoint);
+            long start = System.nanoTime();
+            T response = null;
+            try {
+                response = endpoint.getService().send(request, responseType);
+                listener.onCall(request.getMethod(), response.hasError());
+                if(response.hasError() && response.getError().getCode() == LIMIT_EXCEEDED) {
+                    throw new IOException("Rate limited by " + endpoint.getUrl() + ": " + response.getError().getMessage());
+                }
+                endpoint.onSuccess(System.nanoTime() - start);
+                return response;
+            } catch (IOException | RuntimeException e) {
+                if(response == null) {
+                    listener.onCall(request.getMethod(), true);
+                }
+                failure = e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+                onFailure(endpoint, request.getMethod(), e);
+            }
+        }
+        throw failure;
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        return Async.run(() -> send(request, responseType));
+    }
+
+    @Override
+    public void send(List<BatchCall> calls) {
+        if(!calls.isEmpty()) {
+            sendBatch(calls, new HashSet<>());
+        }
+    }
+
+    private void sendBatch(List<BatchCall> calls, Set<Endpoint> tried) {
+        Endpoint endpoint = choose(tried);
+        tried.add(endpoint);
+
+        List<BatchCall> attempt = new ArrayList<>(calls.size());
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[calls.size()];
+        for (int i = 0; i < calls.size(); i++) {
+            BatchCall call = calls.get(i);
+            BatchCall copy = new BatchCall(call.getMethod(), call.getParams().toArray());
+            attempt.add(copy);
+            responses[i] = copy.getResponse();
+        }
+
+        long start = System.nanoTime();
+        endpoint.getBatchClient().send(attempt);
+        CompletableFuture.allOf(responses).whenComplete((ignored, throwable) -> {
+            for (BatchCall call : attempt) {
+                JsonNode response = answer(call);
+                listener.onCall(call.getMethod(), response == null || response.has("error"));
+            }
+            if(isFailed(attempt)) {
+                onFailure(endpoint, "batch of " + calls.size(), throwable);
+                if(tried.size() < maxAttempts()) {
+                    sendBatch(calls, tried);
+                    return;
+                }
+            } else {
+                endpoint.onSuccess(System.nanoTime() - start);
+            }
+            for (int i = 0; i < calls.size(); i++) {
+                CompletableFuture<JsonNode> target = calls.get(i).getResponse();
+                attempt.get(i).getResponse().whenComplete((response, error) -> {
+                    if(error != null) {
+                        target.completeExceptionally(error);
+                    } else {
+                        target.complete(response);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * A batch counts as failed on the node when no element got a usable answer.
+     */
+    private static boolean isFailed(List<BatchCall> attempt) {
+        for (BatchCall call : attempt) {
+            JsonNode response = answer(call);
+            if(response != null && response.path("error").path("code").asInt() != LIMIT_EXCEEDED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static JsonNode answer(BatchCall call) {
+        CompletableFuture<JsonNode> response = call.getResponse();
+        return response.isCompletedExceptionally() ? null : response.getNow(null);
+    }
+
+    private int maxAttempts() {
+        return Math.min(MAX_ATTEMPTS, endpoints.size());
+    }
+
+    private Endpoint choose(Set<Endpoint> tried) {
+        List<Endpoint> closed = new ArrayList<>();
+        Endpoint soonest = null;
+        for (Endpoint endpoint : endpoints) {
+            if(tried.contains(endpoint)) {
+                continue;
+            }
+            if(!endpoint.isOpen()) {
+                closed.add(endpoint);
+            } else if(soonest == null || endpoint.getOpenUntil() - soonest.getOpenUntil() < 0) {
+                soonest = endpoint;
+            }
+        }
+        if(closed.isEmpty()) {
+            return soonest;
+        }
+        if(closed.size() == 1) {
+            return closed.get(0);
+        }
+        Collections.shuffle(closed, ThreadLocalRandom.current());
+        Endpoint first = closed.get(0);
+        Endpoint second = closed.get(1);
+        if(ThreadLocalRandom.current().nextDouble() < EXPLORE_SHARE) {
+            return first;
+        }
+        return first.getScore() <= second.getScore() ? first : second;
+    }
+
+    private void onFailure(Endpoint endpoint, String what, Throwable throwable) {
+        log.warn("Node " + endpoint.getUrl() + " failed " + what + ": " + (throwable == null ? "rate limited" : throwable.getMessage()));
+        if(endpoint.onFailure()) {
+            log.warn("Node " + endpoint.getUrl() + " is taken out of rotation");
+        }
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        for (Endpoint endpoint : endpoints) {
+            if(!endpoint.isCheckDue(now)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                Response<?> response = new Request<>("eth_blockNumber", Collections.emptyList(), endpoint.getService(), Response.class).send();
+                if(response.hasError()) {
+                    throw new IOException(response.getError().getMessage());
+                }
+                endpoint.onSuccess(System.nanoTime() - start);
+                endpoint.onCheckPassed();
+                log.info("Node " + endpoint.getUrl() + " is back in rotation");
+            } catch (Exception e) {
+                endpoint.onCheckFailed();
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.rb.eth.rpc;
+
+/**
+ * Notified of every JSON-RPC call attempt made by the {@link EndpointPool}.
+ */
+public interface RpcListener {
+
+    /**
+     * @param error the attempt failed on the transport level or the node answered with an error
+     */
+    void onCall(String method, boolean error);
+}
@@ -0,0 +1,260 @@
+package ru.rb.eth.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.OkHttpClient;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * JSON-RPC over one persistent WebSocket connection. Requests are written as soon as they are made,
+ * without waiting for earlier answers, and every answer is routed back to its request by id. Batches
+ * are sent the same way, one message per call. A request without an answer in {@code TIMEOUT_SECONDS}
+ * fails, so a lost reply doesn't keep its caller waiting.
+ *
+ * <p>Block heads can be pushed with a {@code newHeads} subscription. When the connection drops, all
+ * waiting requests fail, the next request connects again, and subscriptions are renewed after a backoff.
+ */
+public class WebSocketService implements Web3jService, BatchClient {
+
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final long PING_SECONDS = 15;
+    private static final long MIN_RECONNECT_MILLIS = 500;
+    private static final long MAX_RECONNECT_MILLIS = 30000;
+
+    private final String url;
+    private final OkHttpClient client;
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+    private final AtomicLong nextId = new AtomicLong();
+
+    private final Map<Long, CompletableFuture<JsonNode>> pending = new ConcurrentHashMap<>();
+    private final List<Consumer<BigInteger>> headListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledThreadPoolExecutor timer;
+
+    private WebSocket webSocket;
+    private volatile long reconnectMillis = MIN_RECONNECT_MILLIS;
+
+    private Logger log;
+
+    public WebSocketService(String url, OkHttpClient client) {
+        log = LoggerFactory.getLogger(WebSocketService.class);
+
+        this.url = url;
+        this.client = client.newBuilder().pingInterval(PING_SECONDS, TimeUnit.SECONDS).build();
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "ws-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    public static boolean isWebSocket(String url) {
+        String lowerCase = url.toLowerCase();
+        return lowerCase.startsWith("ws://") || lowerCase.startsWith("wss://");
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        try {
+            JsonNode response = call(request.getMethod(), request.getParams()).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return objectMapper.treeToValue(response, responseType);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + request.getMethod(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            throw new IOException("No answer to " + request.getMethod() + " from " + url + " in " + TIMEOUT_SECONDS + " seconds");
+        }
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        return call(request.getMethod(), request.getParams()).thenApply(response -> {
+            try {
+                return objectMapper.treeToValue(response, responseType);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public void send(List<BatchCall> calls) {
+        for (BatchCall call : calls) {
+            call(call.getMethod(), call.getParams()).whenComplete((response, throwable) -> {
+                if(throwable != null) {
+                    call.getResponse().completeExceptionally(throwable);
+                } else {
+                    call.getResponse().complete(response);
+                }
+            });
+        }
+    }
+
+    /**
+     * Calls the listener with the number of every new block head, also after the connection was renewed.
+     */
+    public void subscribeNewHeads(Consumer<BigInteger> listener) {
+        headListeners.add(listener);
+        if(headListeners.size() == 1) {
+            subscribe();
+        }
+    }
+
+    public void close() {
+        timer.shutdownNow();
+        synchronized (this) {
+            if(webSocket != null) {
+                webSocket.close(1000, null);
+                webSocket = null;
+            }
+        }
+    }
+
+    private CompletableFuture<JsonNode> call(String method, List<?> params) {
+        long id = nextId.incrementAndGet();
+        CompletableFuture<JsonNode> response = new CompletableFuture<>();
+        pending.put(id, response);
+        ScheduledFuture<?> timeout = timer.schedule(() -> {
+            if(pending.remove(id, response)) {
+                response.completeExceptionally(new IOException("No answer to " + method + " from " + url + " in " + TIMEOUT_SECONDS + " seconds"));
+            }
+        }, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        response.whenComplete((result, throwable) -> timeout.cancel(false));
+
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("jsonrpc", "2.0");
+        request.put("method", method);
+        request.set("params", objectMapper.valueToTree(params));
+        request.put("id", id);
+        try {
+            if(!connection().send(objectMapper.writeValueAsString(request))) {
+                throw new IOException("WebSocket to " + url + " is closed");
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    private synchronized WebSocket connection() {
+        if(webSocket == null) {
+            webSocket = client.newWebSocket(new okhttp3.Request.Builder().url(url).build(), new Listener());
+        }
+        return webSocket;
+    }
+
+    private void subscribe() {
+        call("eth_subscribe", Collections.singletonList("newHeads")).whenComplete((response, throwable) -> {
+            if(throwable != null || response.has("error")) {
+                log.warn("Can't subscribe to new heads on " + url + ": "
+                        + (throwable != null ? throwable.getMessage() : response.path("error").path("message").asText()));
+                return;
+            }
+            log.info("Subscribed to new heads on " + url);
+        });
+    }
+
+    private void onMessage(String text) {
+        JsonNode message;
+        try {
+            message = objectMapper.readTree(text);
+        } catch (IOException e) {
+            log.warn("Unreadable message from " + url + ": " + e.getMessage());
+            return;
+        }
+        if(message.has("id") && !message.get("id").isNull()) {
+            CompletableFuture<JsonNode> response = pending.remove(message.get("id").asLong());
+            if(response != null) {
+                response.complete(message);
+            }
+            return;
+        }
+        if("eth_subscription".equals(message.path("method").asText())) {
+            String number = message.path("params").path("result").path("number").asText(null);
+            if(number == null) {
+                return;
+            }
+            BigInteger head = Numeric.decodeQuantity(number);
+            for (Consumer<BigInteger> listener : headListeners) {
+                listener.accept(head);
+            }
+        }
+    }
+
+    private void onDisconnected(WebSocket closed, Throwable throwable) {
+        synchronized (this) {
+            if(webSocket != closed) {
+                return;
+            }
+            webSocket = null;
+        }
+        IOException failure = new IOException("WebSocket to " + url + " closed"
+                + (throwable == null ? "" : ": " + (throwable.getMessage() != null ? throwable.getMessage() : throwable)), throwable);
+        for (Long id : pending.keySet()) {
+            CompletableFuture<JsonNode> response = pending.remove(id);
+            if(response != null) {
+                response.completeExceptionally(failure);
+            }
+        }
+        if(headListeners.isEmpty() || timer.isShutdown()) {
+            return;
+        }
+        log.warn(failure.getMessage() + ", subscribing again in " + reconnectMillis + " ms");
+        timer.schedule(this::subscribe, reconnectMillis, TimeUnit.MILLISECONDS);
+        reconnectMillis = Math.min(MAX_RECONNECT_MILLIS, reconnectMillis * 2);
+    }
+
+    private class Listener extends WebSocketListener {
+
+        @Override
+        public void onOpen(WebSocket webSocket, okhttp3.Response response) {
+            reconnectMillis = MIN_RECONNECT_MILLIS;
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            WebSocketService.this.onMessage(text);
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(code, null);
+            onDisconnected(webSocket, null);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, okhttp3.Response response) {
+            onDisconnected(webSocket, t);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ru.rb.eth.send;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import ru.rb.eth.rpc.BatchCall;
+import ru.rb.eth.rpc.BatchClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups {@code eth_sendRawTransaction} calls into JSON-RPC batches. A batch leaves when it holds
+ * {@code batchSize} transactions or when its first transaction has waited {@code lingerMillis}.
+ */
+public class BatchBroadcaster implements Broadcaster {
+
+    private final BatchClient client;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final ScheduledExecutorService timer;
+
+    private List<BatchCall> pending = new ArrayList<>();
+    private ScheduledFuture<?> lingerTask;
+
+    public BatchBroadcaster(BatchClient client, int batchSize, long lingerMillis) {
+        this.client = client;
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "batch-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<EthSendTransaction> broadcast(String signedTx) {
+        BatchCall call = new BatchCall("eth_sendRawTransaction", signedTx);
+        List<BatchCall> ready = null;
+        synchronized (this) {
+            pending.add(call);
+            if(pending.size() >= batchSize) {
+                ready = drain();
+            } else if(pending.size() == 1) {
+                lingerTask = timer.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if(ready != null) {
+            client.send(ready);
+        }
+        return call.getResponse().thenApply(BatchBroadcaster::toEthSendTransaction);
+    }
+
+    private void flush() {
+        List<BatchCall> ready;
+        synchronized (this) {
+            ready = drain();
+        }
+        client.send(ready);
+    }
+
+    private List<BatchCall> drain() {
+        if(lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+        List<BatchCall> ready = pending;
+        pending = new ArrayList<>(batchSize);
+        return ready;
+    }
+
+    private static EthSendTransaction toEthSendTransaction(JsonNode element) {
+        EthSendTransaction response = new EthSendTransaction();
+        response.setId(element.path("id").asLong());
+        JsonNode error = element.get("error");
+        if(error != null && !error.isNull()) {
+            response.setError(new Response.Error(error.path("code").asInt(), error.path("message").asText()));
+        } else {
+            response.setResult(element.path("result").asText());
+        }
+        return response;
+    }
+}
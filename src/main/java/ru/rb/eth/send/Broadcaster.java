@@ -0,0 +1,10 @@
+package ru.rb.eth.send;
+
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface Broadcaster {
+
+    CompletableFuture<EthSendTransaction> broadcast(String signedTx);
+}
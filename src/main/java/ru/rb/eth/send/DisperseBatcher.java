@@ -0,0 +1,115 @@
+package ru.rb.eth.send;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionSource;
+import ru.rb.eth.model.TransferBatch;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Packs rows into {@link TransferBatch}es sized to fit a gas budget. The gas per recipient starts from
+ * an estimate and follows what confirmed batches actually used. A reverted batch is split in half and
+ * sent again, so a single bad row ends up failing on its own.
+ */
+public class DisperseBatcher implements TransactionSource {
+
+    private static final long BASE_GAS = 30000;
+    private static final double INITIAL_GAS_PER_RECIPIENT = 40000;
+    private static final double EWMA_WEIGHT = 0.3;
+    private static final int MAX_BATCH_SIZE = 200;
+
+    private final TransactionSource source;
+    private final long gasBudget;
+
+    private final Deque<TransferBatch> retry = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile double gasPerRecipient = INITIAL_GAS_PER_RECIPIENT;
+
+    private Logger log;
+
+    public DisperseBatcher(TransactionSource source, long gasBudget) {
+        log = LoggerFactory.getLogger(DisperseBatcher.class);
+
+        this.source = source;
+        this.gasBudget = gasBudget;
+    }
+
+    public int getBatchSize() {
+        long size = (long) ((gasBudget - BASE_GAS) / gasPerRecipient);
+        return (int) Math.max(1, Math.min(MAX_BATCH_SIZE, size));
+    }
+
+    @Override
+    public Transaction poll() {
+        TransferBatch batch = retry.poll();
+        if(batch != null) {
+            outstanding.incrementAndGet();
+            return batch;
+        }
+
+        int size = getBatchSize();
+        List<Transaction> rows = new ArrayList<>(size);
+        while (rows.size() < size) {
+            Transaction transaction = source.poll();
+            if(transaction == null) {
+                break;
+            }
+            rows.add(transaction);
+        }
+        if(rows.isEmpty()) {
+            return null;
+        }
+        outstanding.incrementAndGet();
+        return new TransferBatch(rows);
+    }
+
+    /**
+     * Batches that were handed out may still come back for a retry, so the source is not exhausted
+     * until every one of them is settled.
+     */
+    @Override
+    public boolean isExhausted() {
+        return outstanding.get() == 0 && retry.isEmpty() && source.isExhausted();
+    }
+
+    @Override
+    public int getTotalCount() {
+        return source.getTotalCount();
+    }
+
+    public void onConfirmed(TransferBatch batch, BigInteger gasUsed) {
+        double observed = (gasUsed.doubleValue() - BASE_GAS) / batch.size();
+        if(observed > 0) {
+            gasPerRecipient = gasPerRecipient * (1 - EWMA_WEIGHT) + observed * EWMA_WEIGHT;
+        }
+        outstanding.decrementAndGet();
+    }
+
+    public void onFailed(TransferBatch batch) {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * Splits a reverted batch. Returns false if it holds a single row, which then has failed for good.
+     */
+    public boolean onReverted(TransferBatch batch) {
+        if(batch.size() < 2) {
+            outstanding.decrementAndGet();
+            return false;
+        }
+        List<Transaction> transfers = batch.getTransfers();
+        int half = transfers.size() / 2;
+        retry.addFirst(new TransferBatch(new ArrayList<>(transfers.subList(half, transfers.size()))));
+        retry.addFirst(new TransferBatch(new ArrayList<>(transfers.subList(0, half))));
+        outstanding.decrementAndGet();
+        log.warn("Batch of " + batch.size() + " rows reverted, retrying as two batches");
+        return true;
+    }
+}
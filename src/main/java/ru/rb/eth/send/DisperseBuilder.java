@@ -0,0 +1,42 @@
+package ru.rb.eth.send;
+
+import org.web3j.crypto.RawTransaction;
+import ru.rb.eth.contract.Disperse;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransferBatch;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds one {@code disperseToken} call for all rows of a {@link TransferBatch}.
+ */
+public class DisperseBuilder implements TransactionBuilder {
+
+    private final String disperseAddress;
+    private final String tokenAddress;
+    private final BigInteger gasLimit;
+    private final BigDecimal dec;
+
+    public DisperseBuilder(String disperseAddress, String tokenAddress, BigInteger gasLimit, BigDecimal dec) {
+        this.disperseAddress = disperseAddress;
+        this.tokenAddress = tokenAddress;
+        this.gasLimit = gasLimit;
+        this.dec = dec;
+    }
+
+    @Override
+    public RawTransaction build(Transaction transaction, BigInteger nonce, BigInteger gasPrice) {
+        List<Transaction> transfers = ((TransferBatch) transaction).getTransfers();
+        List<String> recipients = new ArrayList<>(transfers.size());
+        List<BigInteger> values = new ArrayList<>(transfers.size());
+        for (Transaction transfer : transfers) {
+            recipients.add(transfer.getTo());
+            values.add(transfer.getAmountDec().multiply(dec).toBigIntegerExact());
+        }
+        String data = Disperse.encodeDisperseToken(tokenAddress, recipients, values);
+        return RawTransaction.createTransaction(nonce, gasPrice, gasLimit, disperseAddress, BigInteger.ZERO, data);
+    }
+}
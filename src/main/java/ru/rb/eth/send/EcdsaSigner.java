@@ -0,0 +1,59 @@
+package ru.rb.eth.send;
+
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.math.ec.ECMultiplier;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Sign;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+
+/**
+ * Deterministic (RFC 6979) secp256k1 signatures, equal to {@code Sign.signMessage} with a pre-hashed
+ * message. The recovery id is taken from the nonce point R, where web3j recovers up to four public
+ * keys to find it, which costs more than the signature itself. Safe for concurrent use.
+ */
+class EcdsaSigner {
+
+    private static final X9ECParameters CURVE = CustomNamedCurves.getByName("secp256k1");
+    private static final BigInteger N = CURVE.getN();
+    private static final BigInteger HALF_N = N.shiftRight(1);
+    private static final ECMultiplier MULTIPLIER = new FixedPointCombMultiplier();
+
+    private final BigInteger privateKey;
+
+    EcdsaSigner(ECKeyPair keyPair) {
+        privateKey = keyPair.getPrivateKey();
+    }
+
+    Sign.SignatureData sign(byte[] hash) {
+        BigInteger e = new BigInteger(1, hash);
+        HMacDSAKCalculator kCalculator = new HMacDSAKCalculator(new SHA256Digest());
+        kCalculator.init(N, privateKey, hash);
+        while (true) {
+            BigInteger k = kCalculator.nextK();
+            ECPoint point = MULTIPLIER.multiply(CURVE.getG(), k).normalize();
+            BigInteger x = point.getAffineXCoord().toBigInteger();
+            BigInteger r = x.mod(N);
+            if(r.signum() == 0) {
+                continue;
+            }
+            BigInteger s = k.modInverse(N).multiply(e.add(privateKey.multiply(r))).mod(N);
+            if(s.signum() == 0) {
+                continue;
+            }
+
+            int recId = (point.getAffineYCoord().testBitZero() ? 1 : 0) | (x.compareTo(N) >= 0 ? 2 : 0);
+            if(s.compareTo(HALF_N) > 0) {
+                s = N.subtract(s);
+                recId ^= 1;
+            }
+            return new Sign.SignatureData((byte) (27 + recId), Numeric.toBytesPadded(r, 32), Numeric.toBytesPadded(s, 32));
+        }
+    }
+}
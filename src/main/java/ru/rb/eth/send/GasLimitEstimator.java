@@ -0,0 +1,214 @@
+package ru.rb.eth.send;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.crypto.Keys;
+import org.web3j.utils.Numeric;
+import ru.rb.eth.contract.TransferEncoder;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.rpc.BatchCall;
+import ru.rb.eth.rpc.BatchClient;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gas limit of token transfers by recipient class. A transfer to an address without tokens writes a new
+ * balance slot and costs more than one to an existing holder, so {@link #calibrate} runs one batch of
+ * {@code eth_estimateGas} on sample transfers of each class and keeps the largest estimate of each, times
+ * the margin. Before a row is signed, {@link #estimate} reads the recipient's {@code balanceOf}, grouped into
+ * JSON-RPC batches the same way as {@link BatchBroadcaster}, and gives the row the limit of its class.
+ * A recipient whose balance can't be read gets the new holder limit.
+ */
+public class GasLimitEstimator {
+
+    private static final int NEW_HOLDER = 0;
+    private static final int HOLDER = 1;
+    private static final int MAX_CANDIDATES = 32;
+    private static final int SAMPLES_PER_CLASS = 4;
+    private static final int BATCH_SIZE = 100;
+    private static final long LINGER_MILLIS = 20;
+    private static final long RPC_TIMEOUT_SECONDS = 30;
+    private static final String BALANCE_OF = "0x70a08231";
+
+    private final BatchClient client;
+    private final String token;
+    private final String from;
+    private final TransferEncoder encoder;
+    private final String smallestAmount;
+    private final double margin;
+    private final BigInteger[] limits = new BigInteger[2];
+    private final ScheduledExecutorService timer;
+
+    private List<BatchCall> pending = new ArrayList<>();
+    private ScheduledFuture<?> lingerTask;
+
+    private Logger log;
+
+    /**
+     * @param from     sender of the sample transfers, must hold tokens
+     * @param margin   multiplier on the estimates, e.g. 1.2
+     * @param fallback limit of every class the node can't estimate
+     */
+    public GasLimitEstimator(BatchClient client, String token, String from, int decimals, double margin, BigInteger fallback) {
+        log = LoggerFactory.getLogger(GasLimitEstimator.class);
+
+        this.client = client;
+        this.token = token;
+        this.from = from;
+        this.margin = margin;
+        encoder = new TransferEncoder(decimals);
+        smallestAmount = BigDecimal.ONE.movePointLeft(decimals).toPlainString();
+        limits[NEW_HOLDER] = fallback;
+        limits[HOLDER] = fallback;
+
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gas-limit-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Estimates both classes on the smallest transfer to a new random address and to up to four candidates
+     * of each class. The sender itself is skipped: a transfer to self is cheaper than to any other holder.
+     */
+    public void calibrate(List<String> candidates) throws Exception {
+        List<String> addresses = new ArrayList<>();
+        for (String address : new LinkedHashSet<>(candidates)) {
+            if(!address.equalsIgnoreCase(from) && addresses.size() < MAX_CANDIDATES) {
+                addresses.add(address);
+            }
+        }
+        List<BatchCall> balances = new ArrayList<>();
+        for (String address : addresses) {
+            balances.add(balanceOf(address));
+        }
+        client.send(balances);
+
+        Map<Integer, List<String>> samples = new HashMap<>();
+        samples.put(NEW_HOLDER, new ArrayList<>());
+        samples.put(HOLDER, new ArrayList<>());
+        samples.get(NEW_HOLDER).add("0x" + Keys.getAddress(Keys.createEcKeyPair()));
+        for (int i = 0; i < addresses.size(); i++) {
+            List<String> bucket = samples.get(classOf(balances.get(i).getResponse().get(RPC_TIMEOUT_SECONDS, TimeUnit.SECONDS)));
+            if(bucket.size() < SAMPLES_PER_CLASS) {
+                bucket.add(addresses.get(i));
+            }
+        }
+
+        List<BatchCall> estimates = new ArrayList<>();
+        List<Integer> classes = new ArrayList<>();
+        for (Map.Entry<Integer, List<String>> bucket : samples.entrySet()) {
+            for (String to : bucket.getValue()) {
+                Map<String, String> call = new HashMap<>();
+                call.put("from", from);
+                call.put("to", token);
+                call.put("data", encoder.encode(to, smallestAmount));
+                estimates.add(new BatchCall("eth_estimateGas", call));
+                classes.add(bucket.getKey());
+            }
+        }
+        client.send(estimates);
+
+        BigInteger[] highest = new BigInteger[2];
+        for (int i = 0; i < estimates.size(); i++) {
+            JsonNode response = estimates.get(i).getResponse().get(RPC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if(response.has("error")) {
+                log.warn("Can't estimate gas of a transfer: " + response.path("error").path("message").asText());
+                continue;
+            }
+            BigInteger gas = Numeric.decodeQuantity(response.path("result").asText());
+            int cls = classes.get(i);
+            highest[cls] = highest[cls] == null ? gas : highest[cls].max(gas);
+        }
+
+        if(highest[NEW_HOLDER] != null) {
+            limits[NEW_HOLDER] = withMargin(highest[NEW_HOLDER]);
+            limits[HOLDER] = limits[NEW_HOLDER];
+        }
+        if(highest[HOLDER] != null) {
+            limits[HOLDER] = withMargin(highest[HOLDER]).min(limits[NEW_HOLDER]);
+        }
+        log.info("Gas limit: " + limits[NEW_HOLDER] + " to a new holder, " + limits[HOLDER] + " to an existing holder");
+    }
+
+    /**
+     * Sets the gas limit of the transaction's recipient class once its balance is known.
+     */
+    public CompletableFuture<Transaction> estimate(Transaction transaction) {
+        BatchCall call = balanceOf(transaction.getTo());
+        List<BatchCall> ready = null;
+        synchronized (this) {
+            pending.add(call);
+            if(pending.size() >= BATCH_SIZE) {
+                ready = drain();
+            } else if(pending.size() == 1) {
+                lingerTask = timer.schedule(this::flush, LINGER_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        if(ready != null) {
+            client.send(ready);
+        }
+        return call.getResponse().handle((response, throwable) -> {
+            transaction.setGasLimit(limits[throwable != null ? NEW_HOLDER : classOf(response)]);
+            return transaction;
+        });
+    }
+
+    /**
+     * @return the highest gas limit a transfer can get
+     */
+    public BigInteger getMaxGasLimit() {
+        return limits[NEW_HOLDER];
+    }
+
+    private void flush() {
+        List<BatchCall> ready;
+        synchronized (this) {
+            ready = drain();
+        }
+        client.send(ready);
+    }
+
+    private List<BatchCall> drain() {
+        if(lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+        List<BatchCall> ready = pending;
+        pending = new ArrayList<>(BATCH_SIZE);
+        return ready;
+    }
+
+    private BatchCall balanceOf(String owner) {
+        Map<String, String> call = new HashMap<>();
+        call.put("to", token);
+        call.put("data", BALANCE_OF + Numeric.toHexStringNoPrefixZeroPadded(Numeric.toBigInt(owner), 64));
+        return new BatchCall("eth_call", call, "latest");
+    }
+
+    private static int classOf(JsonNode response) {
+        JsonNode result = response.get("result");
+        if(result == null || result.asText().length() <= 2) {
+            return NEW_HOLDER;
+        }
+        return Numeric.toBigInt(result.asText()).signum() > 0 ? HOLDER : NEW_HOLDER;
+    }
+
+    private BigInteger withMargin(BigInteger gas) {
+        return new BigDecimal(gas).multiply(BigDecimal.valueOf(margin)).setScale(0, RoundingMode.CEILING).toBigInteger();
+    }
+}
@@ -0,0 +1,146 @@
+package ru.rb.eth.send;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.utils.Numeric;
+import ru.rb.eth.rpc.BatchCall;
+import ru.rb.eth.rpc.BatchClient;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gas price for new and replacement transactions, re-sampled during the run. The price is the larger
+ * of {@code eth_gasPrice} and the next block's base fee plus the median tip of recent blocks taken from
+ * {@code eth_feeHistory}, when the node supports it; then the optional multiplier and cap are applied.
+ */
+public class GasPriceStrategy {
+
+    private static final long RPC_TIMEOUT_SECONDS = 30;
+    private static final String FEE_HISTORY_BLOCKS = "0x5";
+    private static final int TIP_PERCENTILE = 50;
+
+    private final BatchClient client;
+    private final double multiplier;
+    private final BigInteger maxGasPrice;
+    private final long sampleMillis;
+    private final ScheduledExecutorService executor;
+
+    private volatile BigInteger gasPrice;
+    private volatile boolean feeHistory = true;
+
+    private Logger log;
+
+    /**
+     * @param multiplier  applied to the sampled price when positive
+     * @param maxGasPrice upper bound in wei, or null for none
+     */
+    public GasPriceStrategy(BatchClient client, BigInteger initialGasPrice, double multiplier, BigInteger maxGasPrice, long sampleMillis) {
+        log = LoggerFactory.getLogger(GasPriceStrategy.class);
+
+        this.client = client;
+        this.multiplier = multiplier;
+        this.maxGasPrice = maxGasPrice;
+        this.sampleMillis = sampleMillis;
+        gasPrice = adjust(initialGasPrice);
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gas-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::sample, sampleMillis, sampleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public BigInteger getGasPrice() {
+        return gasPrice;
+    }
+
+    /**
+     * Price for a transaction re-sent with the same nonce: at least 12.5% above the previous one, as
+     * nodes reject smaller bumps, and not below the current price. Null if that would exceed the cap.
+     */
+    public BigInteger getReplacementPrice(BigInteger previous) {
+        BigInteger bumped = previous.multiply(BigInteger.valueOf(9)).divide(BigInteger.valueOf(8)).add(BigInteger.ONE);
+        BigInteger price = bumped.max(gasPrice);
+        if(maxGasPrice != null && price.compareTo(maxGasPrice) > 0) {
+            return null;
+        }
+        return price;
+    }
+
+    private void sample() {
+        try {
+            BatchCall gasPriceCall = new BatchCall("eth_gasPrice");
+            BatchCall feeHistoryCall = new BatchCall("eth_feeHistory", FEE_HISTORY_BLOCKS, "latest",
+                    Collections.singletonList(TIP_PERCENTILE));
+            client.send(feeHistory ? Arrays.asList(gasPriceCall, feeHistoryCall) : Collections.singletonList(gasPriceCall));
+
+            BigInteger price = Numeric.decodeQuantity(result(gasPriceCall).asText());
+            if(feeHistory) {
+                JsonNode response = feeHistoryCall.getResponse().get(RPC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if(response.hasNonNull("result")) {
+                    price = price.max(fromFeeHistory(response.get("result")));
+                } else {
+                    feeHistory = false;
+                    log.info("Node doesn't support eth_feeHistory, gas price follows eth_gasPrice only");
+                }
+            }
+
+            BigInteger adjusted = adjust(price);
+            if(!adjusted.equals(gasPrice)) {
+                log.debug("Gas price changed from " + gasPrice + " to " + adjusted + " wei");
+                gasPrice = adjusted;
+            }
+        } catch (Exception e) {
+            log.warn("Can't sample gas price: " + e.getMessage());
+        }
+    }
+
+    private static JsonNode result(BatchCall call) throws Exception {
+        JsonNode response = call.getResponse().get(RPC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if(!response.hasNonNull("result")) {
+            throw new IllegalStateException(call.getMethod() + " failed: " + response.path("error"));
+        }
+        return response.get("result");
+    }
+
+    private static BigInteger fromFeeHistory(JsonNode history) {
+        JsonNode baseFees = history.path("baseFeePerGas");
+        if(baseFees.size() == 0) {
+            return BigInteger.ZERO;
+        }
+        BigInteger nextBaseFee = Numeric.decodeQuantity(baseFees.get(baseFees.size() - 1).asText());
+
+        List<BigInteger> tips = new ArrayList<>();
+        for (JsonNode reward : history.path("reward")) {
+            if(reward.size() > 0) {
+                tips.add(Numeric.decodeQuantity(reward.get(0).asText()));
+            }
+        }
+        Collections.sort(tips);
+        BigInteger tip = tips.isEmpty() ? BigInteger.ZERO : tips.get(tips.size() / 2);
+        return nextBaseFee.add(tip);
+    }
+
+    private BigInteger adjust(BigInteger price) {
+        if(multiplier > 0) {
+            price = new BigDecimal(price).multiply(BigDecimal.valueOf(multiplier)).toBigInteger();
+        }
+        if(maxGasPrice != null) {
+            price = price.min(maxGasPrice);
+        }
+        return price;
+    }
+}
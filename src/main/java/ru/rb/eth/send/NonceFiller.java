@@ -0,0 +1,18 @@
+package ru.rb.eth.send;
+
+import ru.rb.eth.model.Transaction;
+
+import java.math.BigInteger;
+
+/**
+ * Transfer of zero ETH from the sender account to itself, sent only to use up a nonce that was given back
+ * after nothing was left to sign, so the transactions with higher nonces can be mined.
+ */
+class NonceFiller extends Transaction {
+
+    static final BigInteger GAS_LIMIT = BigInteger.valueOf(21_000);
+
+    NonceFiller(String address) {
+        super(-1, address, "0");
+    }
+}
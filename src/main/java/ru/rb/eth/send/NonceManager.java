@@ -0,0 +1,59 @@
+package ru.rb.eth.send;
+
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.PriorityQueue;
+
+/**
+ * Hands out nonces locally after reading the pending transaction count once. Nonces of rejected
+ * broadcasts are given back and reused first, lowest first, so a rejection does not leave a gap.
+ * Once nothing is left to sign, {@link #pollReclaimed} hands them to the {@link NonceFiller}s instead.
+ */
+public class NonceManager {
+
+    private final PriorityQueue<BigInteger> reclaimed = new PriorityQueue<>();
+    private BigInteger next;
+
+    public NonceManager(Web3j web3, String address) throws IOException {
+        EthGetTransactionCount count = web3.ethGetTransactionCount(address, DefaultBlockParameterName.PENDING).send();
+        if(count.hasError()) {
+            throw new IOException("Can't get transaction count: " + count.getError().getMessage());
+        }
+        next = count.getTransactionCount();
+    }
+
+    public synchronized BigInteger acquire() {
+        BigInteger nonce = reclaimed.poll();
+        if(nonce != null) {
+            return nonce;
+        }
+        nonce = next;
+        next = next.add(BigInteger.ONE);
+        return nonce;
+    }
+
+    public synchronized void release(BigInteger nonce) {
+        if(nonce.compareTo(next) >= 0 || reclaimed.contains(nonce)) {
+            return;
+        }
+        reclaimed.add(nonce);
+        while (reclaimed.remove(next.subtract(BigInteger.ONE))) {
+            next = next.subtract(BigInteger.ONE);
+        }
+    }
+
+    /**
+     * @return the lowest given-back nonce, or null if there is no gap
+     */
+    public synchronized BigInteger pollReclaimed() {
+        return reclaimed.poll();
+    }
+
+    public synchronized BigInteger getNext() {
+        return next;
+    }
+}
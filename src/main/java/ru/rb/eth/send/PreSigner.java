@@ -0,0 +1,181 @@
+package ru.rb.eth.send;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionSource;
+
+import java.math.BigInteger;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Assigns nonces and signs transfers ahead of the broadcaster, so sending only pushes ready raw bytes.
+ * Nonces are assigned in order on the pre-signer thread and signatures are computed on the shared
+ * signing pool; transactions leave in the order their nonces were assigned, each once its own
+ * signature is ready. At most {@code lookahead} transactions wait in the buffer. With a
+ * {@link GasLimitEstimator}, each transaction gets its gas limit before it is signed.
+ *
+ * <p>A transaction that can't be signed, e.g. an amount with more fraction digits than the token has, is
+ * handed to the failure listener and the rows after it go on. Its nonce is taken by a {@link NonceFiller}
+ * sent through the filler sender in the failed transaction's place, so broadcasts still leave in nonce order;
+ * without a filler sender the nonce is given back.
+ */
+public class PreSigner implements TransactionSource {
+
+    private static final long IDLE_SLEEP_MILLIS = 50;
+
+    private final TransactionSource source;
+    private final BlockingQueue<CompletableFuture<Transaction>> signed;
+
+    private final NonceManager nonceManager;
+    private final TransactionSigner signer;
+    private final Executor signingPool;
+    private final GasLimitEstimator gasLimits;
+
+    private BiConsumer<Transaction, Throwable> failureListener = (transaction, throwable) -> {};
+    private Function<Transaction, CompletableFuture<?>> fillerSender;
+    private volatile boolean finished;
+
+    private Logger log;
+
+    /**
+     * @param gasLimits estimator of per-transfer gas limits, or null to keep the builder's limit
+     */
+    public PreSigner(TransactionSource source, NonceManager nonceManager, TransactionSigner signer, int lookahead,
+                     Executor signingPool, GasLimitEstimator gasLimits) {
+        log = LoggerFactory.getLogger(PreSigner.class);
+
+        this.source = source;
+        this.nonceManager = nonceManager;
+        this.signer = signer;
+        this.signingPool = signingPool;
+        this.gasLimits = gasLimits;
+        signed = new ArrayBlockingQueue<>(lookahead);
+    }
+
+    public void setFailureListener(BiConsumer<Transaction, Throwable> failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * @param fillerSender sends a signed {@link NonceFiller} that takes the nonce of a transaction that failed
+     */
+    public void setFillerSender(Function<Transaction, CompletableFuture<?>> fillerSender) {
+        this.fillerSender = fillerSender;
+    }
+
+    public void start() {
+        Thread thread = new Thread(this::run, "pre-signer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (!source.isExhausted() && !finished) {
+                Transaction transaction = source.poll();
+                if(transaction == null) {
+                    Thread.sleep(IDLE_SLEEP_MILLIS);
+                    continue;
+                }
+                transaction.setDequeuedAt(System.nanoTime());
+                BigInteger nonce = nonceManager.acquire();
+                CompletableFuture<Transaction> ready = CompletableFuture.completedFuture(transaction);
+                CompletableFuture<Transaction> next;
+                try {
+                    if(gasLimits != null) {
+                        ready = ready.thenCompose(gasLimits::estimate);
+                    }
+                    next = ready.handleAsync((estimated, throwable) -> throwable == null
+                            ? sign(transaction, nonce)
+                            : fail(transaction, nonce, throwable), signingPool);
+                } catch (RuntimeException e) {
+                    next = CompletableFuture.completedFuture(fail(transaction, nonce, e));
+                }
+                signed.put(next);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("", e);
+        } finally {
+            finished = true;
+        }
+    }
+
+    private Transaction sign(Transaction transaction, BigInteger nonce) {
+        try {
+            signer.sign(transaction, nonce);
+        } catch (RuntimeException e) {
+            return fail(transaction, nonce, e);
+        }
+        transaction.setSignedAt(System.nanoTime());
+        return transaction;
+    }
+
+    /**
+     * @return the filler signed with the nonce of the failed transaction, or null if the nonce was given back
+     */
+    private Transaction fail(Transaction transaction, BigInteger nonce, Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        log.warn("Can't sign the transfer of row " + transaction.getRowIndex() + ": " + cause);
+        failureListener.accept(transaction, cause);
+        if(fillerSender != null) {
+            Transaction filler = new NonceFiller(signer.getAddress());
+            try {
+                signer.sign(filler, nonce);
+                return filler;
+            } catch (RuntimeException e) {
+                log.error("", e);
+            }
+        }
+        nonceManager.release(nonce);
+        return null;
+    }
+
+    /**
+     * Takes the next transaction in nonce order, or returns null while its signature is still being computed
+     * or when it failed. The filler of a failed transaction is sent here, before the transactions after it.
+     */
+    @Override
+    public Transaction poll() {
+        CompletableFuture<Transaction> next = signed.peek();
+        if(next == null || !next.isDone()) {
+            return null;
+        }
+        signed.poll();
+        Transaction transaction;
+        try {
+            transaction = next.join();
+        } catch (RuntimeException e) {
+            log.error("", e);
+            return null;
+        }
+        if(transaction instanceof NonceFiller) {
+            log.info("Nonce " + transaction.getNonce() + " of a failed transfer is filled with " + transaction.getHash());
+            try {
+                fillerSender.apply(transaction);
+            } catch (RuntimeException e) {
+                log.error("", e);
+            }
+            return null;
+        }
+        return transaction;
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return finished && signed.isEmpty();
+    }
+
+    @Override
+    public int getTotalCount() {
+        return source.getTotalCount();
+    }
+}
@@ -0,0 +1,286 @@
+package ru.rb.eth.send;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.TransactionException;
+import org.web3j.utils.Numeric;
+import ru.rb.eth.rpc.BatchCall;
+import ru.rb.eth.rpc.BatchClient;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Confirms all pending transactions from one block feed. Every new block is fetched once with its
+ * transaction hashes, which are matched against the index of our pending hashes; receipts are then
+ * fetched in one batch for the matches only. RPC load grows with the block count, not with the
+ * number of transactions in flight.
+ *
+ * <p>A transaction that stays unmined for {@code replaceAfterBlocks} blocks is reported as stuck to the
+ * callback it was tracked with. The callback may {@link #replace} it with a new hash for the same nonce;
+ * the receipt of whichever hash is mined completes the transaction.
+ */
+public class ReceiptTracker {
+
+    private static final int MAX_BLOCKS_PER_BATCH = 16;
+    private static final long RPC_TIMEOUT_SECONDS = 30;
+
+    private final Web3j web3;
+    private final BatchClient client;
+    private final long pollMillis;
+    private final int timeoutBlocks;
+    private final int replaceAfterBlocks;
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Set<String> awaitingReceipt = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor;
+
+    private volatile BigInteger lastBlock;
+
+    private Logger log;
+
+    /**
+     * @param replaceAfterBlocks blocks before a transaction counts as stuck, 0 to never report it
+     */
+    public ReceiptTracker(Web3j web3, BatchClient client, long pollMillis, int timeoutBlocks, int replaceAfterBlocks) throws IOException {
+        log = LoggerFactory.getLogger(ReceiptTracker.class);
+
+        this.web3 = web3;
+        this.client = client;
+        this.pollMillis = pollMillis;
+        this.timeoutBlocks = timeoutBlocks;
+        this.replaceAfterBlocks = replaceAfterBlocks;
+
+        lastBlock = web3.ethBlockNumber().send().getBlockNumber();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "receipt-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a hash before it is broadcast, so the block that includes it can't be missed.
+     */
+    public CompletableFuture<TransactionReceipt> track(String hash, Runnable onStuck) {
+        Pending entry = new Pending(key(hash), lastBlock, onStuck);
+        pending.put(key(hash), entry);
+        return entry.future;
+    }
+
+    /**
+     * Adds a hash that replaces {@code oldHash} with the same nonce. Both stay tracked, and the
+     * stuck and timeout counters start over.
+     */
+    public void replace(String oldHash, String newHash) {
+        Pending entry = pending.get(key(oldHash));
+        if(entry == null) {
+            return;
+        }
+        entry.hashes.add(key(newHash));
+        entry.sinceBlock = lastBlock;
+        pending.put(key(newHash), entry);
+    }
+
+    public void untrack(String hash) {
+        Pending entry = pending.remove(key(hash));
+        if(entry != null) {
+            remove(entry);
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Processes blocks up to the given head. Used by block feeds that push new heads.
+     */
+    public void onNewHead(BigInteger number) {
+        executor.execute(() -> processUpTo(number));
+    }
+
+    private void poll() {
+        try {
+            processUpTo(web3.ethBlockNumber().send().getBlockNumber());
+        } catch (Exception e) {
+            log.warn("Can't get block number: " + e.getMessage());
+        }
+    }
+
+    private void processUpTo(BigInteger head) {
+        try {
+            if(!awaitingReceipt.isEmpty()) {
+                confirm(new ArrayList<>(awaitingReceipt));
+            }
+            while (lastBlock.compareTo(head) < 0) {
+                if(pending.isEmpty()) {
+                    lastBlock = head;
+                    break;
+                }
+                BigInteger from = lastBlock.add(BigInteger.ONE);
+                BigInteger to = head.min(lastBlock.add(BigInteger.valueOf(MAX_BLOCKS_PER_BATCH)));
+                confirm(matchBlocks(from, to));
+                lastBlock = to;
+            }
+            expire(head);
+            reportStuck(head);
+        } catch (Exception e) {
+            log.warn("Can't process blocks after " + lastBlock + ": " + e.getMessage());
+        }
+    }
+
+    private List<String> matchBlocks(BigInteger from, BigInteger to) throws Exception {
+        List<BatchCall> calls = new ArrayList<>();
+        for (BigInteger number = from; number.compareTo(to) <= 0; number = number.add(BigInteger.ONE)) {
+            calls.add(new BatchCall("eth_getBlockByNumber", Numeric.encodeQuantity(number), false));
+        }
+        client.send(calls);
+
+        List<String> matched = new ArrayList<>();
+        for (BatchCall call : calls) {
+            JsonNode block = call.getResponse().get(RPC_TIMEOUT_SECONDS, TimeUnit.SECONDS).get("result");
+            if(block == null || block.isNull()) {
+                throw new IOException("Block " + call.getParams().get(0) + " is not available yet");
+            }
+            for (JsonNode hash : block.path("transactions")) {
+                if(pending.containsKey(key(hash.asText()))) {
+                    matched.add(hash.asText());
+                }
+            }
+        }
+        return matched;
+    }
+
+    private void confirm(List<String> hashes) throws Exception {
+        if(hashes.isEmpty()) {
+            return;
+        }
+        List<BatchCall> calls = new ArrayList<>();
+        for (String hash : hashes) {
+            calls.add(new BatchCall("eth_getTransactionReceipt", hash));
+        }
+        client.send(calls);
+
+        for (int i = 0; i < calls.size(); i++) {
+            String hash = key(hashes.get(i));
+            if(!pending.containsKey(hash)) {
+                awaitingReceipt.remove(hash);
+                continue;
+            }
+            JsonNode result = calls.get(i).getResponse().get(RPC_TIMEOUT_SECONDS, TimeUnit.SECONDS).get("result");
+            if(result == null || result.isNull()) {
+                awaitingReceipt.add(hash);
+                continue;
+            }
+            awaitingReceipt.remove(hash);
+            Pending entry = pending.remove(hash);
+            if(entry != null) {
+                remove(entry);
+                entry.future.complete(objectMapper.treeToValue(result, TransactionReceipt.class));
+            }
+        }
+    }
+
+    private void remove(Pending entry) {
+        for (String hash : entry.hashes) {
+            pending.remove(hash);
+            awaitingReceipt.remove(hash);
+        }
+    }
+
+    private Set<Pending> entries() {
+        Set<Pending> entries = Collections.newSetFromMap(new IdentityHashMap<>());
+        entries.addAll(pending.values());
+        return entries;
+    }
+
+    private void reportStuck(BigInteger head) {
+        if(replaceAfterBlocks <= 0) {
+            return;
+        }
+        BigInteger deadline = head.subtract(BigInteger.valueOf(replaceAfterBlocks));
+        for (Pending entry : entries()) {
+            BigInteger since = entry.sinceBlock;
+            if(since.compareTo(deadline) > 0 || since.equals(entry.reportedSince)) {
+                continue;
+            }
+            entry.reportedSince = since;
+            try {
+                entry.onStuck.run();
+            } catch (RuntimeException e) {
+                log.error("", e);
+            }
+        }
+    }
+
+    /**
+     * Gives up on transactions that were not seen for {@code timeoutBlocks} blocks, after asking for
+     * their receipts directly once in case a block was matched before its receipt was available.
+     */
+    private void expire(BigInteger head) throws Exception {
+        BigInteger deadline = head.subtract(BigInteger.valueOf(timeoutBlocks));
+        List<Pending> expired = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
+        for (Pending entry : entries()) {
+            if(entry.sinceBlock.compareTo(deadline) < 0) {
+                expired.add(entry);
+                hashes.addAll(entry.hashes);
+            }
+        }
+        if(expired.isEmpty()) {
+            return;
+        }
+
+        confirm(hashes);
+        for (Pending entry : expired) {
+            if(entry.future.isDone()) {
+                continue;
+            }
+            remove(entry);
+            entry.future.completeExceptionally(new TransactionException("Transaction receipt was not generated after "
+                    + timeoutBlocks + " blocks for transaction: " + entry.hashes.get(entry.hashes.size() - 1)));
+        }
+    }
+
+    private static String key(String hash) {
+        return hash.toLowerCase();
+    }
+
+    private static class Pending {
+
+        private final CompletableFuture<TransactionReceipt> future = new CompletableFuture<>();
+        private final List<String> hashes = new CopyOnWriteArrayList<>();
+        private final Runnable onStuck;
+        private volatile BigInteger sinceBlock;
+        private BigInteger reportedSince;
+
+        private Pending(String hash, BigInteger sinceBlock, Runnable onStuck) {
+            hashes.add(hash);
+            this.sinceBlock = sinceBlock;
+            this.onStuck = onStuck;
+        }
+    }
+}
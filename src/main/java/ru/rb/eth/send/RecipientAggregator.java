@@ -0,0 +1,106 @@
+package ru.rb.eth.send;
+
+import ru.rb.eth.model.MergedTransfer;
+import ru.rb.eth.model.Transaction;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Merges rows paying the same address into one transfer of the exact sum. Addresses are keyed by
+ * their 20 bytes, held as two longs and an int in an open-addressing table. A recipient paid once costs no
+ * allocation of its own; only one that repeats gets a list of its rows and a merged transfer.
+ * Transfers keep the order of first appearance.
+ */
+public class RecipientAggregator {
+
+    private long[] high;
+    private long[] middle;
+    private int[] low;
+    private int[] groupIndex;
+    private int mask;
+
+    private final List<Transaction> firsts = new ArrayList<>();
+    private final List<List<Transaction>> repeats = new ArrayList<>();
+
+    private RecipientAggregator(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        high = new long[capacity];
+        middle = new long[capacity];
+        low = new int[capacity];
+        groupIndex = new int[capacity];
+        Arrays.fill(groupIndex, -1);
+        mask = capacity - 1;
+    }
+
+    public static ArrayDeque<Transaction> aggregate(ArrayDeque<Transaction> transactions) {
+        RecipientAggregator aggregator = new RecipientAggregator(transactions.size());
+        for (Transaction transaction : transactions) {
+            aggregator.add(transaction);
+        }
+
+        ArrayDeque<Transaction> merged = new ArrayDeque<>(aggregator.firsts.size());
+        for (int i = 0; i < aggregator.firsts.size(); i++) {
+            List<Transaction> rows = aggregator.repeats.get(i);
+            if(rows == null) {
+                merged.add(aggregator.firsts.get(i));
+                continue;
+            }
+            BigDecimal sum = BigDecimal.ZERO;
+            for (Transaction row : rows) {
+                sum = sum.add(row.getAmountDec());
+            }
+            merged.add(new MergedTransfer(rows.get(0).getTo(), sum.toPlainString(), rows));
+        }
+        return merged;
+    }
+
+    private void add(Transaction transaction) {
+        String to = transaction.getTo();
+        long h = parseHex(to, 2, 16);
+        long m = parseHex(to, 18, 16);
+        int l = (int) parseHex(to, 34, 8);
+
+        int slot = hash(h, m, l) & mask;
+        while (groupIndex[slot] != -1) {
+            if(high[slot] == h && middle[slot] == m && low[slot] == l) {
+                int group = groupIndex[slot];
+                List<Transaction> rows = repeats.get(group);
+                if(rows == null) {
+                    rows = new ArrayList<>();
+                    rows.add(firsts.get(group));
+                    repeats.set(group, rows);
+                }
+                rows.add(transaction);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        high[slot] = h;
+        middle[slot] = m;
+        low[slot] = l;
+        groupIndex[slot] = firsts.size();
+        firsts.add(transaction);
+        repeats.add(null);
+    }
+
+    private static long parseHex(String s, int from, int length) {
+        long value = 0;
+        for (int i = from; i < from + length; i++) {
+            value = value << 4 | Character.digit(s.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private static int hash(long h, long m, int l) {
+        long x = h * 0x9e3779b97f4a7c15L ^ m * 0xc2b2ae3d27d4eb4fL ^ l;
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        return (int) x;
+    }
+}
@@ -0,0 +1,160 @@
+package ru.rb.eth.send;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionSource;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Takes transactions from a source and sends them as long as fewer than {@code maxInFlight} of them
+ * are unconfirmed. The send rate is paced by a token bucket and tuned AIMD-style: it grows while
+ * confirmations come back as fast as the best seen so far, and is cut on RPC errors or when the
+ * confirmation latency rises. When the source is exhausted but transactions are still in flight, nonces
+ * given back by rejected broadcasts are filled through the gap filler, so later nonces aren't stuck behind them.
+ */
+public class SendScheduler {
+
+    private static final double ADDITIVE_INCREASE = 0.5;
+    private static final double LATENCY_BACKOFF = 0.85;
+    private static final double ERROR_BACKOFF = 0.5;
+    private static final double LATENCY_TOLERANCE = 1.5;
+    private static final double EWMA_WEIGHT = 0.1;
+    private static final long BACKOFF_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long IDLE_SLEEP_MILLIS = 50;
+
+    private final TransactionSource source;
+    private final Function<Transaction, CompletableFuture<?>> sender;
+
+    private final Semaphore window;
+    private final int maxInFlight;
+    private final TokenBucket bucket;
+    private final double minRate;
+    private final double maxRate;
+    private Supplier<CompletableFuture<?>> gapFiller;
+    private BiConsumer<Transaction, Throwable> failureListener = (transaction, throwable) -> {};
+
+    private double latencyEwma;
+    private double minLatency = Double.MAX_VALUE;
+    private long lastBackoff;
+
+    private Logger log;
+
+    public SendScheduler(TransactionSource source, Function<Transaction, CompletableFuture<?>> sender,
+                         int maxInFlight, double rate, double minRate, double maxRate) {
+        log = LoggerFactory.getLogger(SendScheduler.class);
+
+        this.source = source;
+        this.sender = sender;
+        this.maxInFlight = maxInFlight;
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        window = new Semaphore(maxInFlight);
+        bucket = new TokenBucket(Math.max(minRate, Math.min(maxRate, rate)));
+        lastBackoff = System.nanoTime() - BACKOFF_COOLDOWN_NANOS;
+    }
+
+    /**
+     * @param gapFiller sends a transaction for the lowest given-back nonce and returns null if there is none
+     */
+    public void setGapFiller(Supplier<CompletableFuture<?>> gapFiller) {
+        this.gapFiller = gapFiller;
+    }
+
+    /**
+     * @param failureListener called with a transaction the sender threw on; the scheduler goes on with the next one
+     */
+    public void setFailureListener(BiConsumer<Transaction, Throwable> failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    public void start() {
+        Thread thread = new Thread(this::run, "send-scheduler");
+        thread.start();
+    }
+
+    public double getRate() {
+        return bucket.getRate();
+    }
+
+    public int getInFlight() {
+        return maxInFlight - window.availablePermits();
+    }
+
+    private void run() {
+        try {
+            while (!source.isExhausted()) {
+                window.acquire();
+
+                Transaction transaction = source.poll();
+                if(transaction == null) {
+                    window.release();
+                    Thread.sleep(IDLE_SLEEP_MILLIS);
+                    continue;
+                }
+                bucket.acquire();
+
+                long sentAt = System.nanoTime();
+                CompletableFuture<?> future;
+                try {
+                    future = sender.apply(transaction);
+                } catch (RuntimeException e) {
+                    window.release();
+                    log.error("", e);
+                    failureListener.accept(transaction, e);
+                    continue;
+                }
+                future.whenComplete((result, throwable) -> {
+                    window.release();
+                    onComplete(System.nanoTime() - sentAt, throwable);
+                });
+            }
+            while (gapFiller != null && getInFlight() > 0) {
+                try {
+                    gapFiller.get();
+                } catch (RuntimeException e) {
+                    log.error("", e);
+                }
+                Thread.sleep(IDLE_SLEEP_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("All transactions are sent");
+    }
+
+    private synchronized void onComplete(long latencyNanos, Throwable throwable) {
+        double rate = bucket.getRate();
+        if(throwable != null) {
+            backoff(rate, ERROR_BACKOFF);
+            return;
+        }
+
+        latencyEwma = latencyEwma == 0 ? latencyNanos : latencyEwma * (1 - EWMA_WEIGHT) + latencyNanos * EWMA_WEIGHT;
+        minLatency = Math.min(minLatency, latencyEwma);
+        if(latencyEwma > minLatency * LATENCY_TOLERANCE) {
+            backoff(rate, LATENCY_BACKOFF);
+        } else {
+            bucket.setRate(Math.min(maxRate, rate + ADDITIVE_INCREASE / Math.max(1, rate)));
+        }
+    }
+
+    private void backoff(double rate, double factor) {
+        long now = System.nanoTime();
+        if(now - lastBackoff < BACKOFF_COOLDOWN_NANOS) {
+            return;
+        }
+        lastBackoff = now;
+        double newRate = Math.max(minRate, rate * factor);
+        if(newRate != rate) {
+            bucket.setRate(newRate);
+            log.debug(String.format("Send rate lowered to %.2f tx/s", newRate));
+        }
+    }
+}
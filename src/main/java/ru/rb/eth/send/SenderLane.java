@@ -0,0 +1,75 @@
+package ru.rb.eth.send;
+
+import ru.rb.eth.metrics.CostAccount;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One sender account with its own nonce sequence, signer and in-flight window. Lanes take rows from
+ * a shared source, so a lane that stalls stops taking rows while the others go on.
+ */
+public class SenderLane {
+
+    private final int index;
+    private final String address;
+    private final DisperseBatcher batcher;
+
+    private PreSigner preSigner;
+    private SendScheduler scheduler;
+
+    private final AtomicInteger sentCount = new AtomicInteger();
+    private final CostAccount cost = new CostAccount();
+
+    public SenderLane(int index, String address, DisperseBatcher batcher) {
+        this.index = index;
+        this.address = address;
+        this.batcher = batcher;
+    }
+
+    public void setPipeline(PreSigner preSigner, SendScheduler scheduler) {
+        this.preSigner = preSigner;
+        this.scheduler = scheduler;
+    }
+
+    public void start() {
+        preSigner.start();
+        scheduler.start();
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public DisperseBatcher getBatcher() {
+        return batcher;
+    }
+
+    public SendScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public int incrementSent() {
+        return sentCount.incrementAndGet();
+    }
+
+    public int getSentCount() {
+        return sentCount.get();
+    }
+
+    public void addGas(long gas, BigInteger gasPrice) {
+        cost.record(gas, gasPrice);
+    }
+
+    public long getTotalGas() {
+        return cost.getGas();
+    }
+
+    public BigInteger getTotalWei() {
+        return cost.getWei();
+    }
+}
@@ -0,0 +1,53 @@
+package ru.rb.eth.send;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket whose rate can be changed while it is in use. Holds at most one second worth of tokens.
+ */
+public class TokenBucket {
+
+    private static final long MAX_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private double rate;
+    private double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double rate) {
+        setRate(rate);
+        tokens = 1;
+        lastRefill = System.nanoTime();
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public synchronized void setRate(double rate) {
+        this.rate = rate;
+        capacity = Math.max(1, rate);
+        tokens = Math.min(tokens, capacity);
+    }
+
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if(tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNanos = (long) ((1 - tokens) / rate * 1e9);
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(1, Math.min(waitNanos, MAX_SLEEP_NANOS)));
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) / 1e9 * rate);
+        lastRefill = now;
+    }
+}
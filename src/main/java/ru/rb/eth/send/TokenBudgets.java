@@ -0,0 +1,155 @@
+package ru.rb.eth.send;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Token balance left to every lane, charged as the lanes take rows from the shared source. A lane whose balance
+ * doesn't cover its next row takes no more rows; the row is left to a lane that still covers it and fails when
+ * none does. Once every lane has stopped, the rest of the source fails the same way, so every row settles.
+ */
+public class TokenBudgets {
+
+    private final TransactionSource source;
+    private final BigInteger[] left;
+    private final boolean[] stopped;
+    private final BigDecimal dec;
+    private final List<Transaction> declined = new ArrayList<>();
+
+    private BiConsumer<Transaction, Throwable> failureListener = (transaction, throwable) -> {};
+
+    private Logger log;
+
+    /**
+     * @param balances token balance of every lane in the token's smallest unit
+     * @param dec      10 to the power of the token's decimals
+     */
+    public TokenBudgets(TransactionSource source, List<BigInteger> balances, BigDecimal dec) {
+        log = LoggerFactory.getLogger(TokenBudgets.class);
+
+        this.source = source;
+        this.dec = dec;
+        left = balances.toArray(new BigInteger[0]);
+        stopped = new boolean[left.length];
+    }
+
+    public void setFailureListener(BiConsumer<Transaction, Throwable> failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    public TransactionSource forLane(int lane) {
+        return new TransactionSource() {
+            @Override
+            public Transaction poll() {
+                return TokenBudgets.this.poll(lane);
+            }
+
+            @Override
+            public boolean isExhausted() {
+                return TokenBudgets.this.isExhausted(lane);
+            }
+
+            @Override
+            public int getTotalCount() {
+                return source.getTotalCount();
+            }
+        };
+    }
+
+    private synchronized Transaction poll(int lane) {
+        if(stopped[lane]) {
+            if(allStopped()) {
+                Transaction transaction;
+                while ((transaction = source.poll()) != null) {
+                    fail(transaction);
+                }
+            }
+            return null;
+        }
+
+        for (Iterator<Transaction> iterator = declined.iterator(); iterator.hasNext(); ) {
+            Transaction transaction = iterator.next();
+            if(charge(lane, transaction)) {
+                iterator.remove();
+                failUncovered();
+                return transaction;
+            }
+        }
+
+        Transaction transaction = source.poll();
+        if(transaction == null) {
+            return null;
+        }
+        if(charge(lane, transaction)) {
+            failUncovered();
+            return transaction;
+        }
+        stopped[lane] = true;
+        log.warn("Lane " + lane + " has " + left[lane] + " tokens left, less than row " + transaction.getRowIndex()
+                + " needs. It takes no more rows");
+        declined.add(transaction);
+        failUncovered();
+        return null;
+    }
+
+    private synchronized boolean isExhausted(int lane) {
+        if(stopped[lane] && !allStopped()) {
+            return true;
+        }
+        return source.isExhausted() && declined.isEmpty();
+    }
+
+    private boolean charge(int lane, Transaction transaction) {
+        BigInteger amount = amountOf(transaction);
+        if(amount.compareTo(left[lane]) > 0) {
+            return false;
+        }
+        left[lane] = left[lane].subtract(amount);
+        return true;
+    }
+
+    /**
+     * Fails the declined rows no running lane has enough tokens left for.
+     */
+    private void failUncovered() {
+        for (Iterator<Transaction> iterator = declined.iterator(); iterator.hasNext(); ) {
+            Transaction transaction = iterator.next();
+            BigInteger amount = amountOf(transaction);
+            boolean covered = false;
+            for (int i = 0; i < left.length && !covered; i++) {
+                covered = !stopped[i] && amount.compareTo(left[i]) <= 0;
+            }
+            if(!covered) {
+                iterator.remove();
+                fail(transaction);
+            }
+        }
+    }
+
+    private void fail(Transaction transaction) {
+        failureListener.accept(transaction, new IllegalStateException("Insufficient funds: no sender account has "
+                + transaction.getAmount() + " tokens left"));
+    }
+
+    private boolean allStopped() {
+        for (boolean laneStopped : stopped) {
+            if(!laneStopped) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private BigInteger amountOf(Transaction transaction) {
+        return transaction.getAmountDec().multiply(dec).toBigInteger();
+    }
+}
@@ -0,0 +1,30 @@
+package ru.rb.eth.send;
+
+import org.web3j.crypto.RawTransaction;
+import ru.rb.eth.contract.TransferEncoder;
+import ru.rb.eth.model.Transaction;
+
+import java.math.BigInteger;
+
+/**
+ * Builds one ERC-20 {@code transfer} call per row, with the row's estimated gas limit when it has one.
+ */
+public class TokenTransferBuilder implements TransactionBuilder {
+
+    private final String contractAddress;
+    private final BigInteger gasLimit;
+    private final TransferEncoder encoder;
+
+    public TokenTransferBuilder(String contractAddress, BigInteger gasLimit, int decimals) {
+        this.contractAddress = contractAddress;
+        this.gasLimit = gasLimit;
+        encoder = new TransferEncoder(decimals);
+    }
+
+    @Override
+    public RawTransaction build(Transaction transaction, BigInteger nonce, BigInteger gasPrice) {
+        String data = encoder.encode(transaction.getTo(), transaction.getAmount());
+        BigInteger limit = transaction.getGasLimit() != null ? transaction.getGasLimit() : gasLimit;
+        return RawTransaction.createTransaction(nonce, gasPrice, limit, contractAddress, BigInteger.ZERO, data);
+    }
+}
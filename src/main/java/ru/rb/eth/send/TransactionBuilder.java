@@ -0,0 +1,11 @@
+package ru.rb.eth.send;
+
+import org.web3j.crypto.RawTransaction;
+import ru.rb.eth.model.Transaction;
+
+import java.math.BigInteger;
+
+public interface TransactionBuilder {
+
+    RawTransaction build(Transaction transaction, BigInteger nonce, BigInteger gasPrice);
+}
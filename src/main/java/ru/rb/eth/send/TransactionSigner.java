@@ -0,0 +1,90 @@
+package ru.rb.eth.send;
+
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.Sign;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.rlp.RlpEncoder;
+import org.web3j.rlp.RlpList;
+import org.web3j.rlp.RlpString;
+import org.web3j.rlp.RlpType;
+import org.web3j.utils.Bytes;
+import org.web3j.utils.Numeric;
+import ru.rb.eth.model.Transaction;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds and signs a transfer for one sender account, storing nonce, gas price, raw bytes and hash in the transaction.
+ * The output is the same as {@code TransactionEncoder.signMessage}; the signer may be called from several threads.
+ * On creation a few random hashes are signed both ways with the account's key, and any difference stops the run
+ * before anything is sent.
+ */
+public class TransactionSigner {
+
+    private static final int SELF_CHECKS = 8;
+
+    private final EcdsaSigner ecdsa;
+    private final TransactionBuilder builder;
+    private final GasPriceStrategy gasStrategy;
+    private final String address;
+
+    public TransactionSigner(Credentials credentials, TransactionBuilder builder, GasPriceStrategy gasStrategy) {
+        this.ecdsa = new EcdsaSigner(credentials.getEcKeyPair());
+        this.address = credentials.getAddress();
+        this.builder = builder;
+        this.gasStrategy = gasStrategy;
+        checkSignatures(credentials.getEcKeyPair());
+    }
+
+    public void sign(Transaction transaction, BigInteger nonce) {
+        sign(transaction, nonce, gasStrategy.getGasPrice());
+    }
+
+    public void sign(Transaction transaction, BigInteger nonce, BigInteger gasPrice) {
+        RawTransaction rawTransaction = transaction instanceof NonceFiller
+                ? RawTransaction.createEtherTransaction(nonce, gasPrice, NonceFiller.GAS_LIMIT, transaction.getTo(), BigInteger.ZERO)
+                : builder.build(transaction, nonce, gasPrice);
+        Sign.SignatureData signature = ecdsa.sign(Hash.sha3(TransactionEncoder.encode(rawTransaction)));
+        byte[] signed = RlpEncoder.encode(new RlpList(asRlpValues(rawTransaction, signature)));
+
+        transaction.setNonce(nonce);
+        transaction.setGasPrice(gasPrice);
+        transaction.setSignedTx(Numeric.toHexString(signed));
+        transaction.setHash(Numeric.toHexString(Hash.sha3(signed)));
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    private void checkSignatures(ECKeyPair keyPair) {
+        byte[] hash = new byte[32];
+        for (int i = 0; i < SELF_CHECKS; i++) {
+            ThreadLocalRandom.current().nextBytes(hash);
+            if(!ecdsa.sign(hash).equals(Sign.signMessage(hash, keyPair, false))) {
+                throw new IllegalStateException("Signature of " + address + " differs from web3j's for hash " + Numeric.toHexString(hash));
+            }
+        }
+    }
+
+    private static List<RlpType> asRlpValues(RawTransaction rawTransaction, Sign.SignatureData signature) {
+        List<RlpType> values = new ArrayList<>(9);
+        values.add(RlpString.create(rawTransaction.getNonce()));
+        values.add(RlpString.create(rawTransaction.getGasPrice()));
+        values.add(RlpString.create(rawTransaction.getGasLimit()));
+        String to = rawTransaction.getTo();
+        values.add(to != null && !to.isEmpty() ? RlpString.create(Numeric.hexStringToByteArray(to)) : RlpString.create(""));
+        values.add(RlpString.create(rawTransaction.getValue()));
+        values.add(RlpString.create(Numeric.hexStringToByteArray(rawTransaction.getData())));
+        values.add(RlpString.create(signature.getV()));
+        values.add(RlpString.create(Bytes.trimLeadingZeroes(signature.getR())));
+        values.add(RlpString.create(Bytes.trimLeadingZeroes(signature.getS())));
+        return values;
+    }
+}
@@ -0,0 +1,194 @@
+package ru.rb.eth.send;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.rpc.BatchCall;
+import ru.rb.eth.rpc.BatchClient;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Finds rows that were already paid on chain, e.g. by a run that died before its journal reached the disk.
+ * The token's {@code Transfer} events from the sender accounts are read with {@code eth_getLogs} over block
+ * ranges, several ranges per batch, and indexed by recipient and raw amount. A range the node refuses as too
+ * large is split in half and asked again, so the number of calls grows with the block span, not with the rows.
+ *
+ * <p>Every event pays one row. Rows left over are then grouped by recipient, and a group whose amounts add
+ * up to an event is paid by it, the way {@link RecipientAggregator} merges them.
+ */
+public class TransferReconciler {
+
+    private static final String TRANSFER_TOPIC = Hash.sha3String("Transfer(address,address,uint256)");
+    private static final long RANGE_BLOCKS = 10000;
+    private static final int RANGES_PER_BATCH = 8;
+    private static final long RPC_TIMEOUT_SECONDS = 60;
+
+    private final BatchClient client;
+    private final String token;
+    private final List<String> senderTopics = new ArrayList<>();
+    private final int decimals;
+
+    private final Map<String, Deque<String>> transfers = new HashMap<>();
+    private int transferCount;
+
+    private Logger log;
+
+    public TransferReconciler(BatchClient client, String token, List<String> senders, int decimals) {
+        log = LoggerFactory.getLogger(TransferReconciler.class);
+
+        this.client = client;
+        this.token = token.toLowerCase();
+        this.decimals = decimals;
+        for (String sender : senders) {
+            senderTopics.add(Numeric.toHexStringWithPrefixZeroPadded(Numeric.toBigInt(sender), 64));
+        }
+    }
+
+    /**
+     * Loads all transfers from the senders in the given blocks, both inclusive.
+     */
+    public void scan(long fromBlock, long toBlock) throws Exception {
+        Deque<long[]> ranges = new ArrayDeque<>();
+        for (long from = fromBlock; from <= toBlock; from += RANGE_BLOCKS) {
+            ranges.add(new long[]{from, Math.min(toBlock, from + RANGE_BLOCKS - 1)});
+        }
+
+        int queries = 0;
+        while (!ranges.isEmpty()) {
+            List<long[]> batch = new ArrayList<>();
+            List<BatchCall> calls = new ArrayList<>();
+            while (!ranges.isEmpty() && batch.size() < RANGES_PER_BATCH) {
+                long[] range = ranges.poll();
+                batch.add(range);
+                calls.add(new BatchCall("eth_getLogs", filter(range[0], range[1])));
+            }
+            client.send(calls);
+            queries += calls.size();
+
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                long[] range = batch.get(i);
+                JsonNode response = calls.get(i).getResponse().get(RPC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                JsonNode error = response.get("error");
+                if(error == null) {
+                    for (JsonNode event : response.path("result")) {
+                        add(event);
+                    }
+                    continue;
+                }
+                if(range[0] == range[1]) {
+                    throw new IOException("Can't read transfers in block " + range[0] + ": " + error.path("message").asText());
+                }
+                long middle = range[0] + (range[1] - range[0]) / 2;
+                ranges.addFirst(new long[]{middle + 1, range[1]});
+                ranges.addFirst(new long[]{range[0], middle});
+            }
+        }
+        log.info("Transfers found in blocks " + fromBlock + "-" + toBlock + ": " + transferCount + " in " + queries + " queries");
+    }
+
+    /**
+     * Takes one unclaimed transfer matching the row.
+     *
+     * @return hash of the transfer, or null if the row was not paid
+     */
+    public String match(Transaction row) {
+        BigInteger amount = scale(row.getAmount());
+        return amount == null ? null : claim(row.getTo(), amount);
+    }
+
+    /**
+     * Matches rows one by one and then grouped by recipient, calling {@code onPaid} for every paid row.
+     *
+     * @return number of paid rows
+     */
+    public int reconcile(List<Transaction> rows, BiConsumer<Transaction, String> onPaid) {
+        int paid = 0;
+        Map<String, List<Transaction>> unpaid = new LinkedHashMap<>();
+        for (Transaction row : rows) {
+            String hash = match(row);
+            if(hash != null) {
+                onPaid.accept(row, hash);
+                paid++;
+            } else {
+                unpaid.computeIfAbsent(row.getTo().toLowerCase(), to -> new ArrayList<>()).add(row);
+            }
+        }
+
+        for (Map.Entry<String, List<Transaction>> group : unpaid.entrySet()) {
+            if(group.getValue().size() < 2) {
+                continue;
+            }
+            BigDecimal sum = BigDecimal.ZERO;
+            for (Transaction row : group.getValue()) {
+                sum = sum.add(row.getAmountDec());
+            }
+            BigInteger amount = scale(sum.toPlainString());
+            String hash = amount == null ? null : claim(group.getKey(), amount);
+            if(hash == null) {
+                continue;
+            }
+            for (Transaction row : group.getValue()) {
+                onPaid.accept(row, hash);
+                paid++;
+            }
+        }
+        return paid;
+    }
+
+    public int getTransferCount() {
+        return transferCount;
+    }
+
+    private Map<String, Object> filter(long fromBlock, long toBlock) {
+        Map<String, Object> filter = new HashMap<>();
+        filter.put("fromBlock", Numeric.encodeQuantity(BigInteger.valueOf(fromBlock)));
+        filter.put("toBlock", Numeric.encodeQuantity(BigInteger.valueOf(toBlock)));
+        filter.put("address", token);
+        filter.put("topics", Arrays.asList(TRANSFER_TOPIC, senderTopics));
+        return filter;
+    }
+
+    private void add(JsonNode event) {
+        JsonNode topics = event.path("topics");
+        if(topics.size() < 3 || event.path("removed").asBoolean()) {
+            return;
+        }
+        String to = "0x" + topics.get(2).asText().substring(26);
+        BigInteger amount = Numeric.toBigInt(event.path("data").asText());
+        transfers.computeIfAbsent(key(to, amount), key -> new ArrayDeque<>()).add(event.path("transactionHash").asText());
+        transferCount++;
+    }
+
+    private String claim(String to, BigInteger amount) {
+        Deque<String> hashes = transfers.get(key(to, amount));
+        return hashes == null ? null : hashes.poll();
+    }
+
+    private BigInteger scale(String amount) {
+        try {
+            return new BigDecimal(amount).movePointRight(decimals).toBigIntegerExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String key(String to, BigInteger amount) {
+        return to.toLowerCase() + amount.toString(16);
+    }
+}
@@ -0,0 +1,201 @@
+package ru.rb.eth.send;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.TransactionException;
+import ru.rb.eth.model.Transaction;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Broadcasts pre-signed transfers and waits for their receipts from the {@link ReceiptTracker}. When the node rejects a transaction
+ * its nonce goes back to the {@link NonceManager}; when the broadcast itself failed or the nonce was already used,
+ * as after a retry on another node, the node is asked whether it saw the transaction before the transfer fails;
+ * if that can't be asked either, the transaction may still be in a mempool, so it is left to its receipt or the stuck
+ * timeout. A transaction reported stuck is signed again with the same nonce at a higher gas price and rebroadcast,
+ * at most {@code MAX_REPLACEMENTS} times.
+ */
+public class TransferSender {
+
+    private static final int MAX_REPLACEMENTS = 5;
+
+    private final Web3j web3;
+    private final Broadcaster broadcaster;
+    private final NonceManager nonceManager;
+    private final ReceiptTracker receiptTracker;
+    private final TransactionSigner signer;
+    private final GasPriceStrategy gasStrategy;
+
+    private final Map<Transaction, Replacements> replaced = new ConcurrentHashMap<>();
+
+    private Logger log;
+
+    public TransferSender(Web3j web3, Broadcaster broadcaster, NonceManager nonceManager, ReceiptTracker receiptTracker,
+                          TransactionSigner signer, GasPriceStrategy gasStrategy) {
+        log = LoggerFactory.getLogger(TransferSender.class);
+
+        this.web3 = web3;
+        this.broadcaster = broadcaster;
+        this.nonceManager = nonceManager;
+        this.receiptTracker = receiptTracker;
+        this.signer = signer;
+        this.gasStrategy = gasStrategy;
+    }
+
+    public CompletableFuture<TransactionReceipt> send(Transaction transaction) {
+        String signedTx = transaction.getSignedTx();
+        transaction.setSignedTx(null);
+
+        CompletableFuture<TransactionReceipt> receipt = receiptTracker.track(transaction.getHash(), () -> replace(transaction));
+        return broadcaster.broadcast(signedTx)
+                .handle((response, throwable) -> throwable != null ? isKnown(transaction, throwable, true)
+                        : isAccepted(transaction, response))
+                .thenCompose(sent -> sent)
+                .thenCompose(sent -> {
+                    transaction.setAcceptedAt(System.nanoTime());
+                    return receipt;
+                })
+                .thenApply(transactionReceipt -> settle(transaction, transactionReceipt))
+                .whenComplete((transactionReceipt, throwable) -> replaced.remove(transaction));
+    }
+
+    private void replace(Transaction transaction) {
+        Replacements replacements = replaced.computeIfAbsent(transaction, t -> new Replacements());
+        synchronized (replacements) {
+            if(replacements.count >= MAX_REPLACEMENTS) {
+                return;
+            }
+            BigInteger gasPrice = gasStrategy.getReplacementPrice(transaction.getGasPrice());
+            if(gasPrice == null) {
+                log.warn("Transaction " + transaction.getHash() + " is stuck but its gas price can't be raised above the limit");
+                return;
+            }
+
+            String oldHash = transaction.getHash();
+            replacements.gasPrices.put(oldHash.toLowerCase(), transaction.getGasPrice());
+            signer.sign(transaction, transaction.getNonce(), gasPrice);
+            replacements.count++;
+
+            String signedTx = transaction.getSignedTx();
+            transaction.setSignedTx(null);
+            receiptTracker.replace(oldHash, transaction.getHash());
+            log.info("Transaction with nonce " + transaction.getNonce() + " is stuck, replaced " + oldHash
+                    + " with " + transaction.getHash() + " at gas price " + gasPrice);
+
+            broadcaster.broadcast(signedTx).whenComplete((response, throwable) -> {
+                if(throwable != null) {
+                    log.warn("Replacement " + transaction.getHash() + " failed: " + throwable.getMessage());
+                } else if(response.hasError()) {
+                    log.warn("Replacement " + transaction.getHash() + " rejected: " + response.getError().getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Records the hash and gas price of whichever replacement was actually mined.
+     */
+    private TransactionReceipt settle(Transaction transaction, TransactionReceipt receipt) {
+        Replacements replacements = replaced.get(transaction);
+        if(replacements == null) {
+            return receipt;
+        }
+        synchronized (replacements) {
+            BigInteger gasPrice = replacements.gasPrices.get(receipt.getTransactionHash().toLowerCase());
+            if(gasPrice != null) {
+                transaction.setHash(receipt.getTransactionHash());
+                transaction.setGasPrice(gasPrice);
+            }
+        }
+        return receipt;
+    }
+
+    /**
+     * Sends a {@link NonceFiller} for the lowest nonce that was given back, if any.
+     *
+     * @return the receipt of the filler, or null if there is no gap
+     */
+    public CompletableFuture<TransactionReceipt> fillGap() {
+        BigInteger nonce = nonceManager.pollReclaimed();
+        if(nonce == null) {
+            return null;
+        }
+        Transaction filler = new NonceFiller(signer.getAddress());
+        signer.sign(filler, nonce);
+        log.info("Nonce " + nonce + " was given back with nothing left to sign, filled with " + filler.getHash());
+        return sendFiller(filler);
+    }
+
+    /**
+     * Sends a signed {@link NonceFiller}, which settles no rows.
+     */
+    public CompletableFuture<TransactionReceipt> sendFiller(Transaction filler) {
+        return send(filler).whenComplete((receipt, throwable) -> {
+            if(throwable != null) {
+                log.warn("Filler " + filler.getHash() + " failed: " + throwable.getMessage());
+            }
+        });
+    }
+
+    private CompletableFuture<Boolean> isAccepted(Transaction transaction, EthSendTransaction response) {
+        if(!response.hasError()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        String message = response.getError().getMessage();
+        String lowerCase = message == null ? "" : message.toLowerCase();
+        if(lowerCase.contains("known transaction") || lowerCase.contains("already known")) {
+            return CompletableFuture.completedFuture(true);
+        }
+        TransactionException rejected = new TransactionException("Transaction rejected: " + message);
+        if(lowerCase.contains("nonce too low")) {
+            // a broadcast retried on another node finds its nonce taken by the first attempt
+            return isKnown(transaction, rejected, false);
+        }
+        reclaim(transaction.getNonce());
+        receiptTracker.untrack(transaction.getHash());
+        throw new CompletionException(rejected);
+    }
+
+    /**
+     * Asks the node for the transaction without blocking the thread that completed the broadcast.
+     *
+     * @param reclaimNonce whether the nonce goes back to the {@link NonceManager} if the node doesn't know the transaction
+     */
+    private CompletableFuture<Boolean> isKnown(Transaction transaction, Throwable throwable, boolean reclaimNonce) {
+        return web3.ethGetTransactionByHash(transaction.getHash()).sendAsync()
+                .handle((response, e) -> {
+                    if(e != null) {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        log.warn("Can't check transaction " + transaction.getHash() + ", waiting for its receipt: " + cause.getMessage());
+                        return true;
+                    }
+                    if(response.getTransaction().isPresent()) {
+                        return true;
+                    }
+                    if(reclaimNonce) {
+                        reclaim(transaction.getNonce());
+                    }
+                    receiptTracker.untrack(transaction.getHash());
+                    throw new CompletionException(throwable);
+                });
+    }
+
+    private void reclaim(BigInteger nonce) {
+        nonceManager.release(nonce);
+        log.debug("Nonce " + nonce + " reclaimed");
+    }
+
+    private static class Replacements {
+
+        private final Map<String, BigInteger> gasPrices = new HashMap<>();
+        private int count;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.rb.eth.util;
+
+import org.bouncycastle.jcajce.provider.digest.Keccak;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * EIP-55 mixed-case checksum. All-lowercase and all-uppercase addresses carry no checksum and pass.
+ */
+public class AddressChecksum {
+
+    private static final ThreadLocal<Keccak.Digest256> KECCAK = ThreadLocal.withInitial(Keccak.Digest256::new);
+
+    /**
+     * @param address an address already known to be {@code 0x} followed by 40 hex digits
+     */
+    public static boolean isValid(String address) {
+        boolean hasLower = false;
+        boolean hasUpper = false;
+        for (int i = 2; i < 42; i++) {
+            char c = address.charAt(i);
+            hasLower |= c >= 'a' && c <= 'f';
+            hasUpper |= c >= 'A' && c <= 'F';
+        }
+        if(!hasLower || !hasUpper) {
+            return true;
+        }
+
+        byte[] hash = KECCAK.get().digest(address.substring(2).toLowerCase().getBytes(StandardCharsets.US_ASCII));
+        for (int i = 0; i < 40; i++) {
+            char c = address.charAt(i + 2);
+            if(c <= '9') {
+                continue;
+            }
+            int nibble = (i & 1) == 0 ? (hash[i >> 1] >> 4) & 0xf : hash[i >> 1] & 0xf;
+            if((nibble >= 8) != (c <= 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
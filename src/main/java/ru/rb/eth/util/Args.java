@@ -2,26 +2,98 @@ package ru.rb.eth.util;
 
 import com.beust.jcommander.Parameter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Args {
 
-    @Parameter(names = { "--xlsx", "-x" }, description = "Path to .xlsx table with data", required = true)
+    @Parameter(names = { "--xlsx", "-x" }, description = "Path to .xlsx, .csv or .tsv table with data", required = true)
     private String xlsxPath;
 
     @Parameter(names = { "--address", "-a" }, description = "Smart contract address in Ethereum network", required = true)
     private String contractAdress;
 
-    @Parameter(names = { "--timer", "-t" }, description = "Time between saving progress (in seconds)")
+    @Parameter(names = { "--timer", "-t" }, description = "Time between progress messages in the log (in seconds)")
     private long time = 3600;
 
-    @Parameter(names = { "--tx-timer", "-o" }, description = "Time between sending transactions (in milliseconds)")
+    @Parameter(names = { "--tx-timer", "-o" }, description = "Initial time between sending transactions (in milliseconds), adjusted while running")
     private long txTime = 3000;
 
-    @Parameter(names = { "--private", "-p" }, description = "Private key for provided account", password = true, echoInput = true)
+    @Parameter(names = { "--max-in-flight", "-w" }, description = "Maximum number of sent but unconfirmed transactions")
+    private int maxInFlight = 50;
+
+    @Parameter(names = { "--min-rate" }, description = "Lowest send rate (in transactions per second)")
+    private double minRate = 0.1;
+
+    @Parameter(names = { "--max-rate" }, description = "Highest send rate (in transactions per second)")
+    private double maxRate = 20;
+
+    @Parameter(names = { "--gas", "-g" }, description = "Multiplier on the gas price (values below 0 disable it)")
+    private double gasMultiplier = -1;
+
+    @Parameter(names = { "--max-gas-price" }, description = "Highest gas price (in gwei), 0 for no limit")
+    private double maxGasPrice = 0;
+
+    @Parameter(names = { "--gas-limit-margin" }, description = "Multiplier on the estimated gas limit of a transfer, 0 to use a fixed 4300000")
+    private double gasLimitMargin = 1.2;
+
+    @Parameter(names = { "--gas-sample" }, description = "Time between gas price samples (in seconds)")
+    private long gasSampleTime = 30;
+
+    @Parameter(names = { "--replace-after" }, description = "Blocks before an unmined transaction is sent again at a higher gas price, 0 disables it")
+    private int replaceAfter = 12;
+
+    @Parameter(names = { "--metrics-port" }, description = "Local port for Prometheus metrics at /metrics, 0 disables it")
+    private int metricsPort = 0;
+
+    @Parameter(names = { "--eth-price" }, description = "ETH price in USD for the cost totals: a ticker URL, a file with the price, the price itself, or none")
+    private String ethPrice = "https://api.coinmarketcap.com/v1/ticker/ethereum/";
+
+    @Parameter(names = { "--price-ttl" }, description = "Time between ETH price refreshes (in seconds)")
+    private long priceTtl = 300;
+
+    @Parameter(names = { "--private", "-p" }, description = "Private keys of sender accounts, separated by commas", password = true, echoInput = true)
     private String privateKey;
 
-    @Parameter(names = { "--url", "-u" }, description = "Node URL")
+    @Parameter(names = { "--keystore-dir" }, description = "Directory with wallet files of sender accounts")
+    private String keystoreDir;
+
+    @Parameter(names = { "--keystore-password" }, description = "Password of the wallet files in the keystore directory", password = true)
+    private String keystorePassword;
+
+    @Parameter(names = { "--url", "-u" }, description = "Node URLs (http, https, ws or wss), separated by commas")
     private String url;
 
+    @Parameter(names = { "--stream", "-s" }, description = "Stream the .xlsx table row by row and start sending while it is still being read")
+    private boolean stream = false;
+
+    @Parameter(names = { "--resume", "-r" }, description = "Continue an interrupted run from its progress journal")
+    private boolean resume = false;
+
+    @Parameter(names = { "--reconcile-from" }, description = "First block to search for transfers already made by the sender accounts; rows paid by them are not sent again. 0 disables it")
+    private long reconcileFrom = 0;
+
+    @Parameter(names = { "--report" }, description = "Write a progress .xlsx (or .csv for .csv and .tsv tables) from the journal and exit")
+    private boolean report = false;
+
+    @Parameter(names = { "--journal-commit" }, description = "Time between journal commits to disk (in milliseconds)")
+    private long journalCommitTime = 100;
+
+    @Parameter(names = { "--batch-size", "-b" }, description = "Number of transactions sent in one JSON-RPC batch request (1 disables batching)")
+    private int batchSize = 1;
+
+    @Parameter(names = { "--batch-linger" }, description = "Longest time a transaction waits for its batch to fill (in milliseconds)")
+    private long batchLinger = 20;
+
+    @Parameter(names = { "--merge", "-m" }, description = "Pay rows with the same address in one transfer of their summed amount")
+    private boolean merge = false;
+
+    @Parameter(names = { "--disperse", "-d" }, description = "Disperse contract address. Rows are paid in batches through its disperseToken method")
+    private String disperseAddress;
+
+    @Parameter(names = { "--disperse-gas" }, description = "Gas budget of one disperse transaction")
+    private long disperseGas = 3000000;
+
     public String getXlsxPath() {
         return xlsxPath;
     }
@@ -38,11 +110,127 @@ public class Args {
         return privateKey;
     }
 
+    public List<String> getPrivateKeys() {
+        List<String> keys = new ArrayList<>();
+        if(privateKey != null) {
+            for (String key : privateKey.split(",")) {
+                if(!key.trim().isEmpty()) {
+                    keys.add(key.trim());
+                }
+            }
+        }
+        return keys;
+    }
+
+    public String getKeystoreDir() {
+        return keystoreDir;
+    }
+
+    public String getKeystorePassword() {
+        return keystorePassword;
+    }
+
     public long getTxTime() {
         return txTime;
     }
 
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public double getMinRate() {
+        return minRate;
+    }
+
+    public double getMaxRate() {
+        return maxRate;
+    }
+
+    public double getGasLimitMargin() {
+        return gasLimitMargin;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getBatchLinger() {
+        return batchLinger;
+    }
+
+    public String getDisperseAddress() {
+        return disperseAddress;
+    }
+
+    public long getDisperseGas() {
+        return disperseGas;
+    }
+
     public String getUrl() {
         return url;
     }
-}
\ No newline at end of file
+
+    public List<String> getUrls() {
+        List<String> urls = new ArrayList<>();
+        if(url != null) {
+            for (String node : url.split(",")) {
+                if(!node.trim().isEmpty()) {
+                    urls.add(node.trim());
+                }
+            }
+        }
+        return urls;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public long getReconcileFrom() {
+        return reconcileFrom;
+    }
+
+    public boolean isReport() {
+        return report;
+    }
+
+    public long getJournalCommitTime() {
+        return journalCommitTime;
+    }
+
+    public boolean isMerge() {
+        return merge;
+    }
+
+    public double getGasMultiplier() {
+        return gasMultiplier;
+    }
+
+    public double getMaxGasPrice() {
+        return maxGasPrice;
+    }
+
+    public long getGasSampleTime() {
+        return gasSampleTime;
+    }
+
+    public int getReplaceAfter() {
+        return replaceAfter;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public String getEthPrice() {
+        return ethPrice;
+    }
+
+    public long getPriceTtl() {
+        return priceTtl;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.rb.eth.util;
+
+import ru.rb.eth.model.TransactionStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks address format, EIP-55 checksum and amount format of sheet rows. A whole sheet is split into
+ * chunks checked on the common fork-join pool; the result for every row lands at its own index, so
+ * callers report errors in sheet order. Checksums of addresses repeated in the sheet are hashed once.
+ */
+public class RowValidator {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * @return {@link TransactionStatus#PARSED}, {@link TransactionStatus#ADDRESS_PARSING_ERROR} or
+     * {@link TransactionStatus#AMOUNT_PARSING_ERROR} for every row
+     */
+    public static int[] validate(List<String> addresses, List<String> amounts) {
+        int[] statuses = new int[addresses.size()];
+        Map<String, Boolean> checksums = new ConcurrentHashMap<>();
+        ForkJoinPool.commonPool().invoke(new Chunk(addresses, amounts, statuses, checksums, 0, statuses.length));
+        return statuses;
+    }
+
+    public static int validate(String address, String amount) {
+        if(!Util.isValidAddress(address) || !AddressChecksum.isValid(address)) {
+            return TransactionStatus.ADDRESS_PARSING_ERROR;
+        }
+        if(!Util.isValidAmount(amount)) {
+            return TransactionStatus.AMOUNT_PARSING_ERROR;
+        }
+        return TransactionStatus.PARSED;
+    }
+
+    private static class Chunk extends RecursiveAction {
+
+        private final List<String> addresses;
+        private final List<String> amounts;
+        private final int[] statuses;
+        private final Map<String, Boolean> checksums;
+        private final int from;
+        private final int to;
+
+        private Chunk(List<String> addresses, List<String> amounts, int[] statuses, Map<String, Boolean> checksums, int from, int to) {
+            this.addresses = addresses;
+            this.amounts = amounts;
+            this.statuses = statuses;
+            this.checksums = checksums;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunk(addresses, amounts, statuses, checksums, from, middle),
+                        new Chunk(addresses, amounts, statuses, checksums, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                String address = addresses.get(i);
+                if(!Util.isValidAddress(address) || !checksums.computeIfAbsent(address, AddressChecksum::isValid)) {
+                    statuses[i] = TransactionStatus.ADDRESS_PARSING_ERROR;
+                } else if(!Util.isValidAmount(amounts.get(i))) {
+                    statuses[i] = TransactionStatus.AMOUNT_PARSING_ERROR;
+                } else {
+                    statuses[i] = TransactionStatus.PARSED;
+                }
+            }
+        }
+    }
+}
@@ -1,45 +1,37 @@
 package ru.rb.eth.util;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.IOException;
-
 public class Util {
 
+    /**
+     * {@code 0x} followed by 40 hex digits. The checksum is checked separately by {@link AddressChecksum}.
+     */
     public static boolean isValidAddress(String address) {
-        return address.matches("0x[A-Fa-f0-9]{40}");
-    }
-
-    public static boolean isValidAmount(String amount) {
-        int lastCommaIndex = amount.lastIndexOf('.');
-        if(lastCommaIndex == -1) {
-            return amount.matches("\\d+");
-        } else {
-            return amount.matches("\\d+.?\\d*") && amount.substring(lastCommaIndex).length() <= 19;
+        if(address.length() != 42 || address.charAt(0) != '0' || address.charAt(1) != 'x') {
+            return false;
+        }
+        for (int i = 2; i < 42; i++) {
+            char c = address.charAt(i);
+            if(!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+                return false;
+            }
         }
+        return true;
     }
 
-    public static double getEthPrice() {
-        Logger log = LoggerFactory.getLogger(Util.class);
-        try {
-            OkHttpClient client = new OkHttpClient();
-            Request request = new Request.Builder()
-                    .url("https://api.coinmarketcap.com/v1/ticker/ethereum/")
-                    .build();
-            Response response = client.newCall(request).execute();
-            if (response.body() != null) {
-                ObjectNode[] nodes = new ObjectMapper().readValue(response.body().string(), ObjectNode[].class);
-                return nodes[0].get("price_usd").asDouble();
+    /**
+     * Digits with an optional decimal point and at most 18 fraction digits.
+     */
+    public static boolean isValidAmount(String amount) {
+        int point = -1;
+        int length = amount.length();
+        for (int i = 0; i < length; i++) {
+            char c = amount.charAt(i);
+            if(c == '.' && point == -1 && i > 0) {
+                point = i;
+            } else if(c < '0' || c > '9') {
+                return false;
             }
-        } catch (IOException e) {
-            log.error("", e);
         }
-        return Double.NaN;
+        return length > 0 && (point == -1 || length - point - 1 <= 18);
     }
-}
\ No newline at end of file
+}
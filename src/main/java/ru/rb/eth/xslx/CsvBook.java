@@ -0,0 +1,291 @@
+package ru.rb.eth.xslx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionStatus;
+import ru.rb.eth.util.RowValidator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Reads a .csv or .tsv table through a memory-mapped file, one window at a time, and hands validated
+ * rows to the send queue while the rest of the file is still being read. Fields are located and trimmed
+ * on the mapped bytes; only the address and amount strings kept by the transaction are created.
+ * The row index of a transaction is its line number, a first line that doesn't start with an address
+ * is taken as the header. Quoted fields may not contain the delimiter.
+ */
+public class CsvBook implements StreamingBook {
+
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final long WINDOW_SIZE = 256L << 20;
+
+    private final BlockingQueue<Transaction> transactions = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Transaction> parsingErrTxs = new ArrayList<>();
+
+    private Path bookPath;
+    private byte delimiter;
+
+    private String bookName;
+    private Path progressDirPath;
+
+    private StatusCsv statusCsv;
+    private Consumer<Transaction> parsedListener = transaction -> {};
+
+    private byte[] field = new byte[64];
+    private int lineNum;
+
+    private volatile int parsedCount;
+    private volatile boolean finished;
+    private volatile boolean hasErrors;
+    private volatile Exception readError;
+
+    private BigInteger totalAmount = BigInteger.ZERO;
+    private BigDecimal e18;
+
+    private Logger log;
+
+    public CsvBook(String path) throws IOException {
+        log = LoggerFactory.getLogger(CsvBook.class);
+
+        e18 = new BigDecimal("1000000000000000000");
+
+        bookPath = Paths.get(path).normalize().toAbsolutePath();
+        String fileName = bookPath.getFileName().toString();
+        bookName = fileName.substring(0, fileName.lastIndexOf("."));
+        delimiter = fileName.toLowerCase().endsWith(".tsv") ? (byte) '\t' : (byte) ',';
+
+        progressDirPath = Paths.get(bookPath.getParent().toString(), bookName + "_progress");
+        if(!Files.exists(progressDirPath)) {
+            Files.createDirectory(progressDirPath);
+        }
+
+        statusCsv = new StatusCsv(progressDirPath, bookName);
+    }
+
+    public static boolean isCsv(String path) {
+        String lowerCase = path.toLowerCase();
+        return lowerCase.endsWith(".csv") || lowerCase.endsWith(".tsv");
+    }
+
+    @Override
+    public void read() {
+        log.info("Start reading " + bookPath);
+        try (FileChannel channel = FileChannel.open(bookPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int consumed = readLines(window, position + length == size);
+                if(consumed == 0) {
+                    throw new IOException("Line " + lineNum + " is longer than " + WINDOW_SIZE + " bytes");
+                }
+                position += consumed;
+            }
+        } catch (Exception e) {
+            log.error("", e);
+            readError = e;
+        } finally {
+            finished = true;
+        }
+        log.info("Parsed rows: " + parsedCount);
+    }
+
+    /**
+     * @return number of bytes up to the last complete line of the window, the next window starts there
+     */
+    private int readLines(MappedByteBuffer window, boolean last) {
+        int limit = window.limit();
+        int start = 0;
+        while (start < limit) {
+            int end = start;
+            while (end < limit && window.get(end) != '\n') {
+                end++;
+            }
+            if(end == limit && !last) {
+                break;
+            }
+            readLine(window, start, end);
+            lineNum++;
+            start = end + 1;
+        }
+        return Math.min(start, limit);
+    }
+
+    private void readLine(MappedByteBuffer window, int start, int end) {
+        if(lineNum == 0 && end - start >= 3 && window.get(start) == (byte) 0xEF
+                && window.get(start + 1) == (byte) 0xBB && window.get(start + 2) == (byte) 0xBF) {
+            start += 3;
+        }
+        int addressEnd = indexOf(window, start, end, delimiter);
+        int amountStart = addressEnd == end ? end : addressEnd + 1;
+        int amountEnd = indexOf(window, amountStart, end, delimiter);
+
+        String addressStr = field(window, start, addressEnd);
+        if(lineNum == 0 && !addressStr.startsWith("0x") && !addressStr.startsWith("0X")) {
+            return;
+        }
+        String amountStr = field(window, amountStart, amountEnd);
+        if(addressStr.isEmpty() && amountStr.isEmpty()) {
+            return;
+        }
+
+        int rowNum = lineNum;
+        int status = RowValidator.validate(addressStr, amountStr);
+        if(status == TransactionStatus.ADDRESS_PARSING_ERROR) {
+            log.warn("Error parsing address in line " + rowNum + "! Skip this row!");
+            parsingError(rowNum, status, addressStr, amountStr);
+            return;
+        }
+
+        if(status == TransactionStatus.AMOUNT_PARSING_ERROR) {
+            log.warn("Error parsing amount in line " + rowNum + "! Skip this row!");
+            parsingError(rowNum, status, addressStr, amountStr);
+            return;
+        }
+
+        Transaction transaction = new Transaction(rowNum, addressStr, amountStr);
+        totalAmount = totalAmount.add(new BigDecimal(amountStr).multiply(e18).toBigIntegerExact());
+        parsedCount++;
+        parsedListener.accept(transaction);
+        try {
+            transactions.put(transaction);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing line " + rowNum, e);
+        }
+    }
+
+    private void parsingError(int rowNum, int status, String addressStr, String amountStr) {
+        hasErrors = true;
+        Transaction tx = new Transaction(-1, addressStr, amountStr);
+        tx.updateStatus(status);
+        parsingErrTxs.add(tx);
+        statusCsv.writeParsingError(rowNum, addressStr, amountStr);
+    }
+
+    private static int indexOf(MappedByteBuffer window, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if(window.get(i) == value) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Trims blanks, a trailing CR and one pair of quotes around the field.
+     */
+    private String field(MappedByteBuffer window, int from, int to) {
+        while (from < to && isBlank(window.get(from))) {
+            from++;
+        }
+        while (to > from && isBlank(window.get(to - 1))) {
+            to--;
+        }
+        if(to - from >= 2 && window.get(from) == '"' && window.get(to - 1) == '"') {
+            from++;
+            to--;
+        }
+        int length = to - from;
+        if(length == 0) {
+            return "";
+        }
+        if(length > field.length) {
+            field = new byte[length];
+        }
+        for (int i = 0; i < length; i++) {
+            field[i] = window.get(from + i);
+        }
+        return new String(field, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    @Override
+    public Transaction poll() {
+        return transactions.poll();
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return finished && transactions.isEmpty();
+    }
+
+    @Override
+    public int getTotalCount() {
+        return parsedCount;
+    }
+
+    @Override
+    public void setParsedListener(Consumer<Transaction> parsedListener) {
+        this.parsedListener = parsedListener;
+    }
+
+    @Override
+    public Exception getReadError() {
+        return readError;
+    }
+
+    @Override
+    public boolean isHasErrors() {
+        return hasErrors;
+    }
+
+    @Override
+    public BigInteger getTotalAmount() {
+        return totalAmount;
+    }
+
+    @Override
+    public List<Transaction> getParsingErrTxs() {
+        return parsingErrTxs;
+    }
+
+    @Override
+    public String getBookName() {
+        return bookName;
+    }
+
+    @Override
+    public Path getProgressDirPath() {
+        return progressDirPath;
+    }
+
+    @Override
+    public void updateStatus(Transaction transaction) {
+        statusCsv.write(transaction);
+    }
+
+    @Override
+    public void writeBook(boolean parsingResult) {
+        statusCsv.flush();
+    }
+
+    @Override
+    public void setTotal(String totalGas, String totalEth, String totalUsd) {
+        statusCsv.writeTotal(totalGas, totalEth, totalUsd);
+    }
+
+    @Override
+    public void closeBook() {
+        statusCsv.close();
+    }
+}
@@ -0,0 +1,44 @@
+package ru.rb.eth.xslx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rb.eth.model.Transaction;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Rows that were not sent, in the layout of the .csv input so the file can be sent again as it is.
+ */
+public class ErrorCsv {
+
+    private Logger log;
+
+    public ErrorCsv() {
+        log = LoggerFactory.getLogger(ErrorCsv.class);
+    }
+
+    public void write(List<Transaction> txs, Path dirPath, String name) {
+        String timeStamp = new SimpleDateFormat("dd-MM-HH.mm.ss").format(new Date());
+        Path errPath = Paths.get(dirPath.toString(), name + "_err_" + timeStamp + ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(errPath, StandardCharsets.UTF_8)) {
+            writer.write("Address,Amount");
+            writer.newLine();
+            for (Transaction tx : txs) {
+                writer.write(StatusCsv.escape(tx.getTo()));
+                writer.write(',');
+                writer.write(StatusCsv.escape(tx.getAmount()));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            log.error("", e);
+        }
+    }
+}
@@ -1,79 +1,87 @@
 package ru.rb.eth.xslx;
 
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.IndexedColors;
-import org.apache.poi.xssf.usermodel.*;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.rb.eth.model.Transaction;
 import ru.rb.eth.model.TransactionStatus;
 
-import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+/**
+ * Rows that failed to parse or to send, written by a {@link ReportWriter} in the background. Columns get fixed
+ * widths that fit an address and an 18 decimal amount instead of being sized to their content.
+ */
 public class ErrorExcel {
 
-    private Logger log;
+    private static final int ADDRESS_CHARS = 44;
+    private static final int AMOUNT_CHARS = 24;
+
+    private final List<Transaction> txs = new ArrayList<>();
+    private final ReportWriter writer = new ReportWriter();
 
-    private XSSFWorkbook workbook;
-    private XSSFSheet sheet;
+    private Logger log;
 
     public ErrorExcel() {
         log = LoggerFactory.getLogger(ErrorExcel.class);
-
-        workbook = new XSSFWorkbook();
-        sheet = workbook.createSheet();
-        XSSFRow row = sheet.createRow(0);
-        row.createCell(0).setCellValue("Address");
-        row.createCell(1).setCellValue("Amount");
     }
 
     public void add(List<Transaction> txs) {
-        XSSFCellStyle style = workbook.createCellStyle();
+        this.txs.addAll(txs);
+    }
+
+    public void writeBook(Path dirPath, String name) {
+        String timeStamp = new SimpleDateFormat("dd-MM-HH.mm.ss").format(new Date());
+        Path errPath = Paths.get(dirPath.toString(), name + "_err_" + timeStamp + ".xlsx");
+        List<Transaction> rows = new ArrayList<>(txs);
+        writer.write(errPath, book -> fill(book, rows)).whenComplete((path, e) -> {
+            if(e != null) {
+                log.error("", e);
+            }
+        });
+    }
+
+    public void closeBook() {
+        writer.close();
+    }
+
+    private static void fill(SXSSFWorkbook book, List<Transaction> rows) {
+        Sheet sheet = book.createSheet();
+        sheet.setColumnWidth(0, ADDRESS_CHARS * 256);
+        sheet.setColumnWidth(1, AMOUNT_CHARS * 256);
+        Row header = sheet.createRow(0);
+        header.createCell(0).setCellValue("Address");
+        header.createCell(1).setCellValue("Amount");
+
+        CellStyle style = book.createCellStyle();
         style.setFillForegroundColor(IndexedColors.RED.getIndex());
         style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 
-        for(int i = 0; i < txs.size(); i++) {
-            Transaction tx = txs.get(i);
-            XSSFRow row = sheet.createRow(i+1);
-            XSSFCell cell0 = row.createCell(0);
+        for(int i = 0; i < rows.size(); i++) {
+            Transaction tx = rows.get(i);
+            Row row = sheet.createRow(i+1);
+            Cell cell0 = row.createCell(0);
             if(tx.getStatus() == TransactionStatus.ADDRESS_PARSING_ERROR) {
                 cell0.setCellStyle(style);
             }
             cell0.setCellValue(tx.getTo());
 
-            XSSFCell cell1 = row.createCell(1);
+            Cell cell1 = row.createCell(1);
             if(tx.getStatus() == TransactionStatus.AMOUNT_PARSING_ERROR) {
                 cell1.setCellStyle(style);
             }
             cell1.setCellValue(tx.getAmount());
-
-            sheet.autoSizeColumn(0);
-            sheet.autoSizeColumn(1);
-        }
-    }
-
-    public void writeBook(Path dirPath, String name) {
-        String timeStamp = new SimpleDateFormat("dd-MM-HH.mm.ss").format(new Date());
-        Path errPath = Paths.get(dirPath.toString(), name + "_err_" + timeStamp + ".xlsx");
-        try (OutputStream outputStream = Files.newOutputStream(errPath)) {
-            workbook.write(outputStream);
-        } catch (IOException e) {
-            log.error("", e);
-        }
-    }
-
-    public void closeBook() {
-        try {
-            workbook.close();
-        } catch (IOException e) {
-            log.error("", e);
         }
     }
 }
@@ -1,32 +1,49 @@
 package ru.rb.eth.xslx;
 
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.HorizontalAlignment;
 import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.web3j.utils.Numeric;
 import ru.rb.eth.model.Transaction;
 import ru.rb.eth.model.TransactionStatus;
-import ru.rb.eth.util.Util;
+import ru.rb.eth.model.TransactionTable;
+import ru.rb.eth.util.RowValidator;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-public class Excel {
+/**
+ * Reads the whole book into memory once. Status updates only change the rows of the {@link TransactionTable},
+ * so callers never wait for a workbook; progress books are built by a {@link ReportWriter} in the background
+ * from a copy of the table, with the input cells copied from the sheet, which is not changed after parsing.
+ */
+public class Excel implements ProgressBook {
 
-    private ArrayDeque<Transaction> transactions = new ArrayDeque<>();
+    private static final String[] TITLES = {"Status", "Gas used", "Tx hash", "Error"};
+    private static final int[] COLUMN_CHARS = {44, 24, 16, 12, 68, 60, 32};
+
+    private final TransactionTable transactions = new TransactionTable();
+    private final Map<Integer, Integer> parsingErrors = new HashMap<>();
 
     private Path bookPath;
 
@@ -36,44 +53,40 @@ public class Excel {
     private final XSSFWorkbook workbook;
     private XSSFSheet sheet;
 
+    private final ReportWriter writer = new ReportWriter();
+    private volatile String[] totals;
+
     private BigInteger totalAmount = BigInteger.ZERO;
     private boolean hasErrors = false;
 
-    private BigDecimal e18;
-
     private Logger log;
 
     public Excel(String path) throws IOException {
         log = LoggerFactory.getLogger(Excel.class);
 
-        e18 = new BigDecimal("1000000000000000000");
-
         bookPath = Paths.get(path).normalize().toAbsolutePath();
         bookName = bookPath.getFileName().toString().substring(0, bookPath.getFileName().toString().lastIndexOf("."));
 
+        progressDirPath = Paths.get(bookPath.getParent().toString(), bookName + "_progress");
+        if(!Files.exists(progressDirPath)) {
+            Files.createDirectory(progressDirPath);
+        }
+
         workbook = new XSSFWorkbook(Files.newInputStream(bookPath));
         sheet = workbook.getSheetAt(0);
-
-        XSSFCellStyle alignCenterStyle = workbook.createCellStyle();
-        alignCenterStyle.setAlignment(HorizontalAlignment.CENTER);
-
-        String[] titles = new String[]{"Status", "Gas used", "Tx hash", "Error"};
-        for(int i = 2; i < 6; i++) {
-            XSSFCell tempCell = sheet.getRow(0).createCell(i);
-            tempCell.setCellValue(titles[i-2]);
-            tempCell.setCellStyle(alignCenterStyle);
-        }
         log.info("Book is read");
     }
 
-    public ArrayDeque<Transaction> getDeque() {
+    public TransactionTable getTable() {
         return transactions;
     }
 
+    @Override
     public String getBookName() {
         return bookName;
     }
 
+    @Override
     public Path getProgressDirPath() {
         return progressDirPath;
     }
@@ -88,146 +101,244 @@ public class Excel {
 
     public List<Transaction> parseSheet() {
         log.info("Start parsing. Total row count: " + sheet.getLastRowNum());
-        XSSFCellStyle cellStyle = workbook.createCellStyle();
-        cellStyle.setFillForegroundColor(IndexedColors.LIGHT_BLUE.getIndex());
-        cellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-        cellStyle.setAlignment(HorizontalAlignment.CENTER);
 
         List<Transaction> parsingErrTxs = new ArrayList<>();
         DataFormatter df = new DataFormatter();
 
-        for(int i = 1; i <= sheet.getLastRowNum(); i++) {
+        int rowCount = sheet.getLastRowNum();
+        List<String> addresses = new ArrayList<>(rowCount);
+        List<String> amounts = new ArrayList<>(rowCount);
+        for(int i = 1; i <= rowCount; i++) {
             XSSFRow row = sheet.getRow(i);
+            addresses.add(df.formatCellValue(row.getCell(0)));
+            amounts.add(df.formatCellValue(row.getCell(1)));
+        }
+
+        int[] statuses = RowValidator.validate(addresses, amounts);
 
-            String amountStr = df.formatCellValue(row.getCell(1));
-            String addressStr = df.formatCellValue(row.getCell(0));
+        for(int i = 1; i <= rowCount; i++) {
+            String amountStr = amounts.get(i - 1);
+            String addressStr = addresses.get(i - 1);
 
-            if (!Util.isValidAddress(addressStr)) {
+            if (statuses[i - 1] == TransactionStatus.ADDRESS_PARSING_ERROR) {
                 log.warn("Error parsing address in line " + i + "! Skip this row!");
                 Transaction tx = new Transaction(-1, addressStr, amountStr);
                 tx.updateStatus(TransactionStatus.ADDRESS_PARSING_ERROR);
                 parsingErrTxs.add(tx);
-                parsingError(0, row);
+                parsingError(0, i);
                 continue;
             }
 
-            if(!Util.isValidAmount(amountStr)) {
+            if(statuses[i - 1] == TransactionStatus.AMOUNT_PARSING_ERROR) {
                 log.warn("Error parsing amount in line " + i + "! Skip this row!");
                 Transaction tx = new Transaction(-1, addressStr, amountStr);
                 tx.updateStatus(TransactionStatus.AMOUNT_PARSING_ERROR);
                 parsingErrTxs.add(tx);
-                parsingError(1, row);
+                parsingError(1, i);
                 continue;
             }
 
-            Transaction transaction = new Transaction(i, addressStr, amountStr);
-            transactions.add(transaction);
-            totalAmount = totalAmount.add(new BigDecimal(amountStr).multiply(e18).toBigIntegerExact());
-
-            XSSFCell statusCell = row.createCell(2);
-            statusCell.setCellValue("PARSED");
-            statusCell.setCellStyle(cellStyle);
+            transactions.add(i, addressStr, amountStr);
         }
 
-        log.info("Parsed rows: " + transactions.size());
+        totalAmount = transactions.getTotalAmount(TransactionStatus.PARSED);
+        log.info("Parsed rows: " + transactions.getRowCount() + ", " + transactions.getMemoryBytes() / 1024 + " KB");
         writeBook(true);
         return parsingErrTxs;
     }
 
-    private void parsingError(int errColumn, XSSFRow row) {
+    private void parsingError(int errColumn, int rowIndex) {
         hasErrors = true;
-        XSSFCellStyle style = workbook.createCellStyle();
-        style.setFillForegroundColor(IndexedColors.RED.getIndex());
-        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-        row.getCell(errColumn).setCellStyle(style);
-
-        style.setAlignment(HorizontalAlignment.CENTER);
-        XSSFCell statusCell = row.createCell(2);
-        statusCell.setCellValue("PARSING ERROR");
-        statusCell.setCellStyle(style);
-        sheet.autoSizeColumn(2);
+        parsingErrors.put(rowIndex, errColumn);
     }
 
+    @Override
     public void writeBook(boolean parsingResult) {
-        synchronized (workbook) {
-            try {
-                String timeStamp = new SimpleDateFormat("dd-MM-HH.mm.ss").format(new Date());
-                progressDirPath = Paths.get(bookPath.getParent().toString(), bookName + "_progress");
-                if(!Files.exists(progressDirPath)) {
-                    Files.createDirectory(progressDirPath);
-                }
+        write(parsingResult);
+    }
 
-                Path workBookPath;
-                if(parsingResult) {
-                    workBookPath = Paths.get(progressDirPath.toString(), bookName + "_parsing_" + timeStamp + ".xlsx");
-                } else {
-                    workBookPath = Paths.get(progressDirPath.toString(), bookName + "_" + timeStamp + ".xlsx");
-                }
-                try (OutputStream outputStream = Files.newOutputStream(workBookPath)){
-                    workbook.write(outputStream);
-                }
+    /**
+     * Queues a progress book built from the rows as they are when the writer gets to it.
+     *
+     * @return the path of the book once it is written
+     */
+    public CompletableFuture<Path> write(boolean parsingResult) {
+        String timeStamp = new SimpleDateFormat("dd-MM-HH.mm.ss").format(new Date());
+
+        Path workBookPath;
+        if(parsingResult) {
+            workBookPath = Paths.get(progressDirPath.toString(), bookName + "_parsing_" + timeStamp + ".xlsx");
+        } else {
+            workBookPath = Paths.get(progressDirPath.toString(), bookName + "_" + timeStamp + ".xlsx");
+        }
+        String[] bookTotals = totals;
+        return writer.write(workBookPath, book -> fill(book, transactions.copy(), bookTotals)).whenComplete((path, e) -> {
+            if(e != null) {
+                log.error("", e);
+            } else {
+                log.info("Progress written to file " + path);
+            }
+        });
+    }
+
+    /**
+     * @return completes when the books queued so far are written
+     */
+    public CompletableFuture<Void> flush() {
+        return writer.flush();
+    }
+
+    @Override
+    public void closeBook() {
+        close();
+    }
 
-                log.info("Progress written to file " + workBookPath);
+    /**
+     * Closes the sheet once the queued books are written.
+     *
+     * @return completes when the sheet is closed
+     */
+    public CompletableFuture<Void> close() {
+        return writer.close().thenRun(() -> {
+            try {
+                workbook.close();
             } catch (IOException e) {
                 log.error("", e);
             }
-        }
+        });
     }
 
-    public void closeBook() {
-        try {
-            workbook.close();
-        } catch (IOException e) {
-            log.error("", e);
+    @Override
+    public void updateStatus(Transaction transaction) {
+        int rowIndex = transaction.getRowIndex();
+        if(!transactions.contains(rowIndex)) {
+            transactions.add(rowIndex, transaction.getTo(), transaction.getAmount());
+        }
+        byte[] hash = transaction.getHash() == null ? null : Numeric.hexStringToByteArray(transaction.getHash());
+        switch (transaction.getStatus()) {
+            case TransactionStatus.CONFIRMED:
+                transactions.setConfirmed(rowIndex, hash, transaction.getGasUsed().longValueExact());
+                break;
+            case TransactionStatus.ERROR:
+                transactions.setError(rowIndex, hash, transaction.getErrorMsg());
+                break;
+            default:
+                transactions.setStatus(rowIndex, transaction.getStatus());
+                break;
         }
     }
 
-    public void updateStatus(Transaction transaction) {
-        synchronized (workbook) {
-            XSSFRow row = sheet.getRow(transaction.getRowIndex());
-            XSSFCell cell = row.getCell(2);
-
-            XSSFCellStyle cellStyle = workbook.createCellStyle();
-            cellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-            cellStyle.setAlignment(HorizontalAlignment.CENTER);
-            switch (transaction.getStatus()) {
-                case TransactionStatus.PENDING:
-                    cellStyle.setFillForegroundColor(IndexedColors.DARK_YELLOW.getIndex());
-                    cell.setCellValue("PENDING");
-                    break;
-                case TransactionStatus.CONFIRMED:
-                    cellStyle.setFillForegroundColor(IndexedColors.GREEN.getIndex());
-                    cell.setCellValue("CONFIRMED");
-
-                    row.createCell(3).setCellValue(transaction.getGasUsed().toString(10));
-                    sheet.autoSizeColumn(3);
-
-                    row.createCell(4).setCellValue(transaction.getHash());
-                    sheet.autoSizeColumn(4);
-                    break;
-                case TransactionStatus.ERROR:
-                    cellStyle.setFillForegroundColor(IndexedColors.RED.getIndex());
-                    cell.setCellValue("ERROR");
-
-                    row.createCell(5).setCellValue(transaction.getErrorMsg());
-                    sheet.autoSizeColumn(5);
-
-                    if(transaction.getHash() != null) {
-                        row.createCell(4).setCellValue(transaction.getHash());
-                        sheet.autoSizeColumn(4);
+    @Override
+    public void setTotal(String totalGas, String totalEth, String totalUsd) {
+        totals = new String[]{"Total gas: " + totalGas, "Total ETH: " + totalEth, "Total USD: " + totalUsd};
+    }
+
+    private void fill(SXSSFWorkbook book, TransactionTable rows, String[] bookTotals) {
+        Sheet out = book.createSheet(sheet.getSheetName());
+        for (int i = 0; i < COLUMN_CHARS.length; i++) {
+            out.setColumnWidth(i, COLUMN_CHARS[i] * 256);
+        }
+
+        CellStyle alignCenterStyle = book.createCellStyle();
+        alignCenterStyle.setAlignment(HorizontalAlignment.CENTER);
+        CellStyle parsedStyle = createStatusStyle(book, IndexedColors.LIGHT_BLUE);
+        CellStyle pendingStyle = createStatusStyle(book, IndexedColors.DARK_YELLOW);
+        CellStyle confirmedStyle = createStatusStyle(book, IndexedColors.GREEN);
+        CellStyle errorStyle = createStatusStyle(book, IndexedColors.RED);
+        Map<String, CellStyle> formats = new HashMap<>();
+
+        int lastRow = Math.max(sheet.getLastRowNum(), bookTotals == null ? 0 : bookTotals.length - 1);
+        for (int i = 0; i <= lastRow; i++) {
+            Row row = out.createRow(i);
+            XSSFRow input = sheet.getRow(i);
+            if(input != null) {
+                for (Cell cell : input) {
+                    copy(book, formats, cell, row.createCell(cell.getColumnIndex()));
+                }
+            }
+
+            if(i == 0) {
+                for (int column = 2; column < 6; column++) {
+                    Cell title = row.createCell(column);
+                    title.setCellValue(TITLES[column - 2]);
+                    title.setCellStyle(alignCenterStyle);
+                }
+            } else if(parsingErrors.containsKey(i)) {
+                row.getCell(parsingErrors.get(i), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).setCellStyle(errorStyle);
+                status(row, "PARSING ERROR", errorStyle);
+            } else {
+                Transaction transaction = rows.get(i);
+                if(transaction != null) {
+                    switch (transaction.getStatus()) {
+                        case TransactionStatus.PARSED:
+                            status(row, "PARSED", parsedStyle);
+                            break;
+                        case TransactionStatus.PENDING:
+                            status(row, "PENDING", pendingStyle);
+                            break;
+                        case TransactionStatus.CONFIRMED:
+                            status(row, "CONFIRMED", confirmedStyle);
+                            row.createCell(3).setCellValue(transaction.getGasUsed().doubleValue());
+                            row.createCell(4).setCellValue(transaction.getHash());
+                            break;
+                        case TransactionStatus.ERROR:
+                            status(row, "ERROR", errorStyle);
+                            row.createCell(5).setCellValue(transaction.getErrorMsg());
+                            if(transaction.getHash() != null) {
+                                row.createCell(4).setCellValue(transaction.getHash());
+                            }
+                            break;
+                        default:
+                            break;
                     }
-                    break;
-                default:
-                    break;
+                }
+            }
+
+            if(bookTotals != null && i < bookTotals.length) {
+                row.createCell(6).setCellValue(bookTotals[i]);
             }
-            cell.setCellStyle(cellStyle);
         }
     }
 
-    public void setTotal(String totalGas, String totalEth, String totalUsd) {
-        sheet.getRow(0).createCell(6).setCellValue("Total gas: " + totalGas);
-        sheet.getRow(1).createCell(6).setCellValue("Total ETH: " + totalEth);
-        sheet.getRow(2).createCell(6).setCellValue("Total USD: " + totalUsd);
-        sheet.autoSizeColumn(6);
+    private static CellStyle createStatusStyle(SXSSFWorkbook book, IndexedColors color) {
+        CellStyle style = book.createCellStyle();
+        style.setFillForegroundColor(color.getIndex());
+        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        style.setAlignment(HorizontalAlignment.CENTER);
+        return style;
+    }
+
+    private static void status(Row row, String status, CellStyle style) {
+        Cell cell = row.createCell(2);
+        cell.setCellValue(status);
+        cell.setCellStyle(style);
+    }
+
+    /**
+     * Copies the value of an input cell, or the cached value of a formula, with its number format.
+     */
+    private static void copy(SXSSFWorkbook book, Map<String, CellStyle> formats, Cell from, Cell to) {
+        CellType type = from.getCellTypeEnum() == CellType.FORMULA ? from.getCachedFormulaResultTypeEnum() : from.getCellTypeEnum();
+        switch (type) {
+            case NUMERIC:
+                to.setCellValue(from.getNumericCellValue());
+                String format = from.getCellStyle().getDataFormatString();
+                if(format != null && !format.equals("General")) {
+                    to.setCellStyle(formats.computeIfAbsent(format, f -> {
+                        CellStyle style = book.createCellStyle();
+                        style.setDataFormat(book.createDataFormat().getFormat(f));
+                        return style;
+                    }));
+                }
+                break;
+            case STRING:
+                to.setCellValue(from.getStringCellValue());
+                break;
+            case BOOLEAN:
+                to.setCellValue(from.getBooleanCellValue());
+                break;
+            default:
+                break;
+        }
     }
 }
@@ -0,0 +1,20 @@
+package ru.rb.eth.xslx;
+
+import ru.rb.eth.model.Transaction;
+
+import java.nio.file.Path;
+
+public interface ProgressBook {
+
+    void updateStatus(Transaction transaction);
+
+    void writeBook(boolean parsingResult);
+
+    void setTotal(String totalGas, String totalEth, String totalUsd);
+
+    void closeBook();
+
+    String getBookName();
+
+    Path getProgressDirPath();
+}
@@ -0,0 +1,86 @@
+package ru.rb.eth.xslx;
+
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes books one after another on a background thread with POI's streaming {@link SXSSFWorkbook}: only the
+ * last {@value #WINDOW_ROWS} rows of a sheet stay in memory, older ones are flushed to a temporary file, so
+ * the time and memory of a book grow linearly with its rows and nobody waits for it but its future.
+ *
+ * <p>The thread is not a daemon, so a book that is still being written when the run ends is finished
+ * before the JVM exits. It ends once {@link #close} is called or after {@value #IDLE_SECONDS} idle seconds.
+ */
+public class ReportWriter {
+
+    private static final int WINDOW_ROWS = 256;
+    private static final long IDLE_SECONDS = 5;
+
+    /**
+     * Fills an empty book; runs on the writer thread.
+     */
+    public interface Report {
+
+        void fill(SXSSFWorkbook book) throws IOException;
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    public ReportWriter() {
+        executor = new ThreadPoolExecutor(1, 1, IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "report-writer");
+            thread.setDaemon(false);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues a book to be filled and written to the path.
+     *
+     * @return the path once the file is written
+     */
+    public CompletableFuture<Path> write(Path path, Report report) {
+        return CompletableFuture.supplyAsync(() -> {
+            SXSSFWorkbook book = new SXSSFWorkbook(WINDOW_ROWS);
+            try {
+                report.fill(book);
+                try (OutputStream outputStream = Files.newOutputStream(path)) {
+                    book.write(outputStream);
+                }
+                return path;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                book.dispose();
+            }
+        }, executor);
+    }
+
+    /**
+     * @return completes when the books queued so far are written
+     */
+    public CompletableFuture<Void> flush() {
+        return CompletableFuture.runAsync(() -> {}, executor);
+    }
+
+    /**
+     * Takes no more books.
+     *
+     * @return completes when the queued books are written
+     */
+    public CompletableFuture<Void> close() {
+        CompletableFuture<Void> written = flush();
+        executor.shutdown();
+        return written;
+    }
+}
@@ -0,0 +1,120 @@
+package ru.rb.eth.xslx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionStatus;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Append-only status file of the streaming books: one line per status change, later lines win.
+ */
+class StatusCsv {
+
+    private final BufferedWriter writer;
+
+    private Logger log;
+
+    StatusCsv(Path progressDirPath, String bookName) throws IOException {
+        log = LoggerFactory.getLogger(StatusCsv.class);
+
+        String timeStamp = new SimpleDateFormat("dd-MM-HH.mm.ss").format(new Date());
+        Path statusPath = Paths.get(progressDirPath.toString(), bookName + "_status_" + timeStamp + ".csv");
+        writer = Files.newBufferedWriter(statusPath, StandardCharsets.UTF_8);
+        writer.write("Row,Address,Amount,Status,Gas used,Tx hash,Error");
+        writer.newLine();
+        log.info("Statuses will be written to file " + statusPath);
+    }
+
+    void write(Transaction transaction) {
+        String status;
+        switch (transaction.getStatus()) {
+            case TransactionStatus.PENDING:
+                status = "PENDING";
+                break;
+            case TransactionStatus.CONFIRMED:
+                status = "CONFIRMED";
+                break;
+            case TransactionStatus.ERROR:
+                status = "ERROR";
+                break;
+            default:
+                return;
+        }
+        writeLine(transaction.getRowIndex(), transaction.getTo(), transaction.getAmount(), status,
+                transaction.getGasUsed() == null ? "" : transaction.getGasUsed().toString(10),
+                transaction.getHash(), transaction.getErrorMsg());
+    }
+
+    void writeParsingError(int rowIndex, String address, String amount) {
+        writeLine(rowIndex, address, amount, "PARSING ERROR", null, null, null);
+    }
+
+    synchronized void writeTotal(String totalGas, String totalEth, String totalUsd) {
+        try {
+            writer.write("Total gas," + totalGas);
+            writer.newLine();
+            writer.write("Total ETH," + totalEth);
+            writer.newLine();
+            writer.write("Total USD," + totalUsd);
+            writer.newLine();
+        } catch (IOException e) {
+            log.error("", e);
+        }
+    }
+
+    synchronized void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            log.error("", e);
+        }
+    }
+
+    synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.error("", e);
+        }
+    }
+
+    private synchronized void writeLine(int rowIndex, String address, String amount, String status, String gasUsed, String hash, String error) {
+        try {
+            writer.write(String.valueOf(rowIndex));
+            writer.write(',');
+            writer.write(escape(address));
+            writer.write(',');
+            writer.write(escape(amount));
+            writer.write(',');
+            writer.write(status);
+            writer.write(',');
+            writer.write(escape(gasUsed));
+            writer.write(',');
+            writer.write(escape(hash));
+            writer.write(',');
+            writer.write(escape(error));
+            writer.newLine();
+        } catch (IOException e) {
+            log.error("", e);
+        }
+    }
+
+    static String escape(String value) {
+        if(value == null) {
+            return "";
+        }
+        if(value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,33 @@
+package ru.rb.eth.xslx;
+
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionSource;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A table that is parsed on its own thread while its rows are already being sent. Statuses are
+ * appended to a CSV file in the progress directory.
+ */
+public interface StreamingBook extends ProgressBook, TransactionSource {
+
+    /**
+     * Parses the table on the calling thread. Blocks whenever the send queue is full.
+     */
+    void read();
+
+    void setParsedListener(Consumer<Transaction> parsedListener);
+
+    boolean isHasErrors();
+
+    /**
+     * @return what stopped {@link #read} before the end of the table, or null if the whole table was read
+     */
+    Exception getReadError();
+
+    BigInteger getTotalAmount();
+
+    List<Transaction> getParsingErrTxs();
+}
@@ -0,0 +1,243 @@
+package ru.rb.eth.xslx;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import ru.rb.eth.model.Transaction;
+import ru.rb.eth.model.TransactionStatus;
+import ru.rb.eth.util.RowValidator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Reads the first sheet row by row through the POI event model and hands validated rows to the
+ * send queue while the rest of the sheet is still being parsed. Only a bounded number of rows is
+ * kept in memory, so statuses are appended to a CSV file instead of being written back into the book.
+ */
+public class StreamingExcel implements StreamingBook {
+
+    private static final int QUEUE_CAPACITY = 10000;
+
+    private final BlockingQueue<Transaction> transactions = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Transaction> parsingErrTxs = new ArrayList<>();
+
+    private Path bookPath;
+
+    private String bookName;
+    private Path progressDirPath;
+
+    private StatusCsv statusCsv;
+    private Consumer<Transaction> parsedListener = transaction -> {};
+
+    private volatile int parsedCount;
+    private volatile boolean finished;
+    private volatile boolean hasErrors;
+    private volatile Exception readError;
+
+    private BigInteger totalAmount = BigInteger.ZERO;
+    private BigDecimal e18;
+
+    private Logger log;
+
+    public StreamingExcel(String path) throws IOException {
+        log = LoggerFactory.getLogger(StreamingExcel.class);
+
+        e18 = new BigDecimal("1000000000000000000");
+
+        bookPath = Paths.get(path).normalize().toAbsolutePath();
+        bookName = bookPath.getFileName().toString().substring(0, bookPath.getFileName().toString().lastIndexOf("."));
+
+        progressDirPath = Paths.get(bookPath.getParent().toString(), bookName + "_progress");
+        if(!Files.exists(progressDirPath)) {
+            Files.createDirectory(progressDirPath);
+        }
+
+        statusCsv = new StatusCsv(progressDirPath, bookName);
+    }
+
+    @Override
+    public void read() {
+        log.info("Start streaming " + bookPath);
+        try (OPCPackage pkg = OPCPackage.open(bookPath.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+
+            XMLReader sheetParser = SAXHelper.newXMLReader();
+            sheetParser.setContentHandler(new XSSFSheetXMLHandler(
+                    reader.getStylesTable(), null, strings, new RowHandler(), new DataFormatter(), false));
+
+            try (InputStream sheet = reader.getSheetsData().next()) {
+                sheetParser.parse(new InputSource(sheet));
+            }
+        } catch (Exception e) {
+            log.error("", e);
+            readError = e;
+        } finally {
+            finished = true;
+        }
+        log.info("Parsed rows: " + parsedCount);
+    }
+
+    @Override
+    public Transaction poll() {
+        return transactions.poll();
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return finished && transactions.isEmpty();
+    }
+
+    @Override
+    public int getTotalCount() {
+        return parsedCount;
+    }
+
+    @Override
+    public void setParsedListener(Consumer<Transaction> parsedListener) {
+        this.parsedListener = parsedListener;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public Exception getReadError() {
+        return readError;
+    }
+
+    @Override
+    public boolean isHasErrors() {
+        return hasErrors;
+    }
+
+    @Override
+    public BigInteger getTotalAmount() {
+        return totalAmount;
+    }
+
+    @Override
+    public List<Transaction> getParsingErrTxs() {
+        return parsingErrTxs;
+    }
+
+    @Override
+    public String getBookName() {
+        return bookName;
+    }
+
+    @Override
+    public Path getProgressDirPath() {
+        return progressDirPath;
+    }
+
+    @Override
+    public void updateStatus(Transaction transaction) {
+        statusCsv.write(transaction);
+    }
+
+    @Override
+    public void writeBook(boolean parsingResult) {
+        statusCsv.flush();
+    }
+
+    @Override
+    public void setTotal(String totalGas, String totalEth, String totalUsd) {
+        statusCsv.writeTotal(totalGas, totalEth, totalUsd);
+    }
+
+    @Override
+    public void closeBook() {
+        statusCsv.close();
+    }
+
+    private class RowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private String addressStr;
+        private String amountStr;
+
+        @Override
+        public void startRow(int rowNum) {
+            addressStr = "";
+            amountStr = "";
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if(cellReference == null || formattedValue == null) {
+                return;
+            }
+            short col = new CellReference(cellReference).getCol();
+            if(col == 0) {
+                addressStr = formattedValue;
+            } else if(col == 1) {
+                amountStr = formattedValue;
+            }
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if(rowNum == 0) {
+                return;
+            }
+
+            int status = RowValidator.validate(addressStr, amountStr);
+            if(status == TransactionStatus.ADDRESS_PARSING_ERROR) {
+                log.warn("Error parsing address in line " + rowNum + "! Skip this row!");
+                parsingError(rowNum, status);
+                return;
+            }
+
+            if(status == TransactionStatus.AMOUNT_PARSING_ERROR) {
+                log.warn("Error parsing amount in line " + rowNum + "! Skip this row!");
+                parsingError(rowNum, status);
+                return;
+            }
+
+            Transaction transaction = new Transaction(rowNum, addressStr, amountStr);
+            totalAmount = totalAmount.add(new BigDecimal(amountStr).multiply(e18).toBigIntegerExact());
+            parsedCount++;
+            parsedListener.accept(transaction);
+            try {
+                transactions.put(transaction);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while parsing line " + rowNum, e);
+            }
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
+
+        private void parsingError(int rowNum, int status) {
+            hasErrors = true;
+            Transaction tx = new Transaction(-1, addressStr, amountStr);
+            tx.updateStatus(status);
+            parsingErrTxs.add(tx);
+            statusCsv.writeParsingError(rowNum, addressStr, amountStr);
+        }
+    }
+}